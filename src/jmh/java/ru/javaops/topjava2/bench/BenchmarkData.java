@@ -0,0 +1,86 @@
+package ru.javaops.topjava2.bench;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.experimental.UtilityClass;
+import ru.javaops.topjava2.model.Dish;
+import ru.javaops.topjava2.model.Menu;
+import ru.javaops.topjava2.model.Restaurant;
+import ru.javaops.topjava2.model.Vote;
+import ru.javaops.topjava2.to.RestaurantVoteCount;
+
+import java.time.LocalDate;
+import java.util.*;
+
+//  synthetic datasets, deterministic for the same size
+@UtilityClass
+class BenchmarkData {
+    static final int RESTAURANTS = 50;
+    static final int DAYS = 365;
+    static final LocalDate START = LocalDate.of(2021, 1, 1);
+
+    static List<Restaurant> restaurants() {
+        List<Restaurant> restaurants = new ArrayList<>(RESTAURANTS);
+        for (int i = 1; i <= RESTAURANTS; i++) {
+            restaurants.add(new Restaurant(i, "Restaurant " + i, "Street " + i));
+        }
+        return restaurants;
+    }
+
+    static List<Menu> menus(List<Restaurant> restaurants, int dishesPerMenu) {
+        List<Menu> menus = new ArrayList<>(restaurants.size());
+        int dishId = 1;
+        for (Restaurant r : restaurants) {
+            List<Dish> dishes = new ArrayList<>(dishesPerMenu);
+            for (int d = 0; d < dishesPerMenu; d++, dishId++) {
+                dishes.add(new Dish(dishId, "Dish " + dishId, 100 + (dishId * 37) % 900, r));
+            }
+            menus.add(new Menu(r.getId(), START, r, dishes));
+        }
+        return menus;
+    }
+
+    //  one vote per user and day, users are spread over DAYS
+    static List<Vote> votes(List<Restaurant> restaurants, int size) {
+        Random random = new Random(size);
+        List<Vote> votes = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            votes.add(new Vote(i + 1, START.plusDays(i % DAYS), i / DAYS + 1, restaurants.get(random.nextInt(restaurants.size()))));
+        }
+        //  repository returns votes in DB order, not by id
+        Collections.shuffle(votes, random);
+        return votes;
+    }
+
+    //  the same votes aggregated by restaurant and date, as VoteSummaryRepository returns them
+    static List<RestaurantVoteCount> counts(List<Restaurant> restaurants, int votes) {
+        Random random = new Random(votes);
+        long[][] counts = new long[restaurants.size()][DAYS];
+        for (int i = 0; i < votes; i++) {
+            counts[random.nextInt(restaurants.size())][i % DAYS]++;
+        }
+        List<RestaurantVoteCount> result = new ArrayList<>();
+        for (int day = 0; day < DAYS; day++) {
+            for (int r = 0; r < restaurants.size(); r++) {
+                if (counts[r][day] > 0) {
+                    Restaurant rest = restaurants.get(r);
+                    result.add(new RestaurantVoteCount(rest.getId(), rest.getName(), rest.getLocation(), START.plusDays(day), counts[r][day]));
+                }
+            }
+        }
+        return result;
+    }
+
+    //  the same settings as spring.jackson in application.yaml
+    static ObjectMapper mapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE);
+        mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        return mapper;
+    }
+}
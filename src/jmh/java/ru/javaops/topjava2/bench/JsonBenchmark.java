@@ -0,0 +1,49 @@
+package ru.javaops.topjava2.bench;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import ru.javaops.topjava2.model.Restaurant;
+import ru.javaops.topjava2.to.MenuTo;
+import ru.javaops.topjava2.to.RestaurantTo;
+import ru.javaops.topjava2.util.MenuUtil;
+import ru.javaops.topjava2.util.RestaurantUtil;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//  response bodies of /api/root and /api/root/vote/result/history
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int votes;
+
+    private ObjectWriter writer;
+    private List<MenuTo> menus;
+    private List<RestaurantTo> history;
+
+    @Setup
+    public void setup() {
+        writer = BenchmarkData.mapper().writer();
+        List<Restaurant> restaurants = BenchmarkData.restaurants();
+        menus = MenuUtil.getTos(BenchmarkData.menus(restaurants, 5));
+        history = RestaurantUtil.getHistoryTos(BenchmarkData.counts(restaurants, votes), LocalDate.now());
+    }
+
+    @Benchmark
+    public byte[] menus() throws JsonProcessingException {
+        return writer.writeValueAsBytes(menus);
+    }
+
+    @Benchmark
+    public byte[] history() throws JsonProcessingException {
+        return writer.writeValueAsBytes(history);
+    }
+}
@@ -0,0 +1,40 @@
+package ru.javaops.topjava2.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ru.javaops.topjava2.model.Menu;
+import ru.javaops.topjava2.to.MenuTo;
+import ru.javaops.topjava2.util.MenuUtil;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MenuBenchmark {
+
+    @Param({"2", "5"})
+    private int dishes;
+
+    private List<Menu> menus;
+
+    @Setup
+    public void setup() {
+        menus = BenchmarkData.menus(BenchmarkData.restaurants(), dishes);
+    }
+
+    @Benchmark
+    public MenuTo createTo() {
+        Menu menu = menus.get(0);
+        return MenuUtil.createTo(menu.getRestaurant(), menu.getDishes());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<MenuTo> getTos() {
+        return MenuUtil.getTos(menus);
+    }
+}
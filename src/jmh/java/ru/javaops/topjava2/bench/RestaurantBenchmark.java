@@ -0,0 +1,35 @@
+package ru.javaops.topjava2.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ru.javaops.topjava2.to.RestaurantTo;
+import ru.javaops.topjava2.to.RestaurantVoteCount;
+import ru.javaops.topjava2.util.RestaurantUtil;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//  history size is bounded by restaurants * days, vote count changes only the counters
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RestaurantBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    private int votes;
+
+    private List<RestaurantVoteCount> counts;
+
+    @Setup
+    public void setup() {
+        counts = BenchmarkData.counts(BenchmarkData.restaurants(), votes);
+    }
+
+    @Benchmark
+    public List<RestaurantTo> getHistoryTos() {
+        return RestaurantUtil.getHistoryTos(counts, LocalDate.now());
+    }
+}
@@ -0,0 +1,46 @@
+package ru.javaops.topjava2.bench;
+
+import org.openjdk.jmh.annotations.*;
+import ru.javaops.topjava2.model.Restaurant;
+import ru.javaops.topjava2.model.Vote;
+import ru.javaops.topjava2.to.VoteTo;
+import ru.javaops.topjava2.util.VoteUtil;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class VoteBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int votes;
+
+    private List<Vote> data;
+    private Restaurant restaurant;
+    private final LocalDate today = LocalDate.now();
+
+    @Setup
+    public void setup() {
+        List<Restaurant> restaurants = BenchmarkData.restaurants();
+        restaurant = restaurants.get(0);
+        data = BenchmarkData.votes(restaurants, votes);
+    }
+
+    @Benchmark
+    public List<VoteTo> getTos() {
+        return VoteUtil.getTos(data);
+    }
+
+    //  formats and parses LocalTime to truncate it to seconds
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Vote construct() {
+        return new Vote(null, today, 1, restaurant);
+    }
+}
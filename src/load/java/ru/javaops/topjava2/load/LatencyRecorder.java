@@ -0,0 +1,67 @@
+package ru.javaops.topjava2.load;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+//  single-threaded: one recorder per worker, merged after the run
+class LatencyRecorder {
+    private final Map<String, Series> series = new TreeMap<>();
+
+    void record(String endpoint, int status, long nanos) {
+        series.computeIfAbsent(endpoint, e -> new Series()).add(status, nanos);
+    }
+
+    void merge(LatencyRecorder other) {
+        other.series.forEach((endpoint, s) -> series.computeIfAbsent(endpoint, e -> new Series()).addAll(s));
+    }
+
+    long count() {
+        return series.values().stream().mapToLong(s -> s.size).sum();
+    }
+
+    void report(PrintStream out, double seconds) {
+        out.printf("%-22s %9s %9s %9s %9s %9s %9s %9s  %s%n",
+                "endpoint", "requests", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "errors", "statuses");
+        series.forEach((endpoint, s) -> {
+            long[] sorted = Arrays.copyOf(s.latencies, s.size);
+            Arrays.sort(sorted);
+            out.printf("%-22s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9d  %s%n",
+                    endpoint, s.size, s.size / seconds, millis(sorted, 0.5), millis(sorted, 0.99), millis(sorted, 0.999),
+                    sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6, s.errors(), s.statuses);
+        });
+    }
+
+    private static double millis(long[] sorted, double quantile) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+    }
+
+    private static class Series {
+        private long[] latencies = new long[1024];
+        private int size;
+        private final Map<Integer, Integer> statuses = new TreeMap<>();
+
+        private void add(int status, long nanos) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = nanos;
+            statuses.merge(status, 1, Integer::sum);
+        }
+
+        private void addAll(Series other) {
+            latencies = Arrays.copyOf(latencies, Math.max(latencies.length, size + other.size));
+            System.arraycopy(other.latencies, 0, latencies, size, other.size);
+            size += other.size;
+            other.statuses.forEach((status, n) -> statuses.merge(status, n, Integer::sum));
+        }
+
+        //  304 Not Modified is a success of conditional GET
+        private int errors() {
+            return statuses.entrySet().stream()
+                    .filter(e -> e.getKey() >= 400 || e.getKey() < 200)
+                    .mapToInt(Map.Entry::getValue).sum();
+        }
+    }
+}
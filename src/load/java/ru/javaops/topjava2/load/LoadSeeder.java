@@ -0,0 +1,72 @@
+package ru.javaops.topjava2.load;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Inserts load users, restaurants with dishes and today menus over demo data.
+ * Runs before ApplicationReadyEvent, so in-memory state of the services is loaded with the seeded data.
+ */
+@Slf4j
+class LoadSeeder {
+    static final String PASSWORD = "password";
+    private static final int BATCH_SIZE = 1000;
+    private static final int DISHES = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    LoadSeeder(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    static String email(int user) {
+        return "load" + user + "@voting.test";
+    }
+
+    //  {noop} password: token acquisition must not dominate the run, production BCrypt is measured by its own endpoint
+    void seed(int users, int restaurants) {
+        List<Integer> userIndexes = IntStream.range(0, users).boxed().toList();
+        jdbcTemplate.batchUpdate("INSERT INTO users (name, email, password) VALUES (?,?,?)", userIndexes, BATCH_SIZE, (ps, i) -> {
+            ps.setString(1, "Load " + i);
+            ps.setString(2, email(i));
+            ps.setString(3, "{noop}" + PASSWORD);
+        });
+        jdbcTemplate.update("INSERT INTO user_roles (role, user_id) SELECT 'USER', id FROM users WHERE email LIKE 'load%@voting.test'");
+
+        List<Integer> restaurantIndexes = IntStream.range(0, restaurants).boxed().toList();
+        jdbcTemplate.batchUpdate("INSERT INTO restaurant (name, location) VALUES (?,?)", restaurantIndexes, BATCH_SIZE, (ps, i) -> {
+            ps.setString(1, "Load restaurant " + i);
+            ps.setString(2, "Street " + i);
+        });
+        List<Integer> restaurantIds = jdbcTemplate.queryForList(
+                "SELECT id FROM restaurant WHERE name LIKE 'Load restaurant %' ORDER BY id", Integer.class);
+
+        List<Object[]> dishes = new ArrayList<>();
+        for (int id : restaurantIds) {
+            for (int d = 1; d <= DISHES; d++) {
+                dishes.add(new Object[]{"Dish " + d + " of " + id, 100 * d, id});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO dish (name, price, restaurant_id) VALUES (?,?,?)", dishes);
+        Date today = Date.valueOf(LocalDate.now());
+        jdbcTemplate.batchUpdate("INSERT INTO menu (for_date, restaurant_id) VALUES (?,?)", restaurantIds, BATCH_SIZE, (ps, id) -> {
+            ps.setDate(1, today);
+            ps.setInt(2, id);
+        });
+        jdbcTemplate.update("INSERT INTO menu_dishes (menu_id, dishes_id) " +
+                "SELECT m.id, d.id FROM menu m JOIN dish d ON d.restaurant_id = m.restaurant_id " +
+                "JOIN restaurant r ON r.id = m.restaurant_id WHERE m.for_date = ? AND r.name LIKE 'Load restaurant %'", today);
+        log.info("seeded {} users, {} restaurants with today menus", users, restaurants);
+    }
+
+    List<Integer> getRestaurantIds() {
+        return jdbcTemplate.queryForList("SELECT restaurant_id FROM menu WHERE for_date = ? ORDER BY restaurant_id",
+                Integer.class, Date.valueOf(LocalDate.now()));
+    }
+}
@@ -0,0 +1,267 @@
+package ru.javaops.topjava2.load;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.javaops.topjava2.RestaurantVotingApplication;
+import ru.javaops.topjava2.to.TokenTo;
+import ru.javaops.topjava2.util.JsonUtil;
+import ru.javaops.topjava2.web.user.TokenController;
+import ru.javaops.topjava2.web.vote.RootController;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Pre-cutoff voting burst against the application booted in this JVM on a random port.
+ * <p>
+ * Load users, restaurants and today menus are seeded over demo data, limit-time.vote is set to the end of the run.
+ * Workers start one by one during the first 80% of load.duration, each works for its own users without think time:
+ * today menus page and vote result GET with If-None-Match, vote POST for the first vote of a user and PUT after it.
+ * Access token of a user is taken on its first request.
+ * <p>
+ * Options, --name=value: load.users (1000), load.restaurants (50), load.threads (32), load.duration (60s),
+ * load.boot (30s) - startup allowance before the run, load.tail (0s) - load after the vote cutoff, load.think (0ms), load.page-size (20),
+ * load.mix (50,20,30) - weights of menus, vote and result requests.
+ * Other options are passed to the application, e.g. --vote.ingestion.mode=write-behind,
+ * --spring.datasource.url=jdbc:h2:file:./target/load/voting or --threads.virtual.enabled=true to compare
+ * virtual and platform server threads with load.threads above server.tomcat.threads.max (200)
+ */
+public class LoadTest {
+    private static final String MENUS = "GET /api/root";
+    private static final String VOTE_POST = "POST /vote";
+    private static final String VOTE_PUT = "PUT /vote";
+    private static final String RESULT = "GET /vote/result";
+    private static final String TOKEN = "POST /auth/token";
+
+    private final int users;
+    private final int threads;
+    private final Duration duration;
+    private final Duration tail;
+    private final Duration think;
+    private final Duration boot;
+    private final int pageSize;
+    private final int[] mix;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private String baseUrl;
+    private List<Integer> restaurantIds;
+
+    private LoadTest(SimpleCommandLinePropertySource options) {
+        users = Integer.parseInt(option(options, "load.users", "1000"));
+        threads = Integer.parseInt(option(options, "load.threads", "32"));
+        duration = DurationStyle.detectAndParse(option(options, "load.duration", "60s"));
+        tail = DurationStyle.detectAndParse(option(options, "load.tail", "0s"));
+        think = DurationStyle.detectAndParse(option(options, "load.think", "0ms"));
+        boot = DurationStyle.detectAndParse(option(options, "load.boot", "30s"));
+        pageSize = Integer.parseInt(option(options, "load.page-size", "20"));
+        mix = Arrays.stream(option(options, "load.mix", "50,20,30").split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        LoadTest test = new LoadTest(options);
+        int restaurants = Integer.parseInt(option(options, "load.restaurants", "50"));
+
+        //  limit-time.vote is read at startup: the run starts at cutoff - load.duration, when boot is over
+        LocalTime cutoff = LocalTime.now().plus(test.boot).plus(test.duration).truncatedTo(ChronoUnit.SECONDS);
+        //  system properties override application.yaml, command line overrides them
+        System.setProperty("limit-time.vote", cutoff.toString());
+        System.setProperty("server.port", "0");
+        System.setProperty("spring.jpa.show-sql", "false");
+        System.setProperty("logging.level.ru.javaops.topjava2", "WARN");
+        System.setProperty("logging.level.org.springframework.security.web.FilterChainProxy", "WARN");
+        System.setProperty("logging.level.org.springframework.web.servlet.mvc.method.annotation.ExceptionHandlerExceptionResolver", "WARN");
+        //  rejected requests are counted by status
+        System.setProperty("logging.level.ru.javaops.topjava2.web.GlobalExceptionHandler", "OFF");
+        System.setProperty("logging.level.ru.javaops.topjava2.load", "INFO");
+
+        SpringApplication app = new SpringApplication(RestaurantVotingApplication.class);
+        app.addListeners(new Seeder(test.users, restaurants));
+        //  Hibernate statistics miss JdbcTemplate statements, e.g. write-behind batches
+        StatementCounter statementCounter = new StatementCounter();
+        app.addInitializers(ctx -> ctx.getBeanFactory().addBeanPostProcessor(statementCounter));
+        ConfigurableApplicationContext context = app.run(args);
+        try {
+            test.baseUrl = "http://localhost:" + context.getEnvironment().getRequiredProperty("local.server.port");
+            test.restaurantIds = new LoadSeeder(context.getBean(JdbcTemplate.class)).getRestaurantIds();
+            boolean virtual = context.getEnvironment().getProperty("threads.virtual.enabled", Boolean.class, false);
+            System.out.printf("%d users, %d restaurants with menu, %d threads, ramp %s to vote cutoff %s, tail %s, mix %s, %s server threads%n",
+                    test.users, test.restaurantIds.size(), test.threads, test.duration, cutoff, test.tail, Arrays.toString(test.mix),
+                    virtual ? "virtual" : "platform");
+            long wait = Duration.between(LocalTime.now(), cutoff.minus(test.duration)).toMillis();
+            if (wait < 0) {
+                System.out.printf("boot took %d ms longer than load.boot, ramp is shorter%n", -wait);
+            }
+            Thread.sleep(Math.max(0, wait));
+            long statements = statementCounter.get();
+            long start = System.nanoTime();
+            LatencyRecorder recorder = test.run(cutoff);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            statements = statementCounter.get() - statements;
+
+            long requests = recorder.count();
+            System.out.printf("%d requests in %.1f s, %.1f req/s, %.2f DB statements per request%n",
+                    requests, seconds, requests / seconds, requests == 0 ? 0 : (double) statements / requests);
+            recorder.report(System.out, seconds);
+        } finally {
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    private LatencyRecorder run(LocalTime cutoff) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        long toCutoff = Math.max(0, Duration.between(LocalTime.now(), cutoff).toNanos());
+        long rampNanos = toCutoff * 8 / 10;
+        long end = start + toCutoff + tail.toNanos();
+        List<Future<LatencyRecorder>> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            long workerStart = start + rampNanos * worker / threads;
+            workers.add(executor.submit(() -> new Worker(worker).run(workerStart, end)));
+        }
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (Future<LatencyRecorder> worker : workers) {
+            recorder.merge(worker.get());
+        }
+        executor.shutdown();
+        return recorder;
+    }
+
+    private static String option(SimpleCommandLinePropertySource options, String name, String defaultValue) {
+        String value = options.getProperty(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private class Worker {
+        private final LatencyRecorder recorder = new LatencyRecorder();
+        private final List<Integer> userIds = new ArrayList<>();
+        private final Map<Integer, String> tokens = new HashMap<>();
+        private final Set<Integer> voted = new HashSet<>();
+        private final Map<String, String> etags = new HashMap<>();
+
+        //  users are split between workers, so votes of a user are sequential
+        private Worker(int worker) {
+            for (int user = worker; user < users; user += threads) {
+                userIds.add(user);
+            }
+        }
+
+        private LatencyRecorder run(long start, long end) throws InterruptedException {
+            Thread.sleep(Math.max(0, (start - System.nanoTime()) / 1_000_000));
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int total = Arrays.stream(mix).sum();
+            while (System.nanoTime() < end && !userIds.isEmpty()) {
+                int user = userIds.get(random.nextInt(userIds.size()));
+                String token = tokens.computeIfAbsent(user, this::token);
+                if (token == null) {
+                    tokens.remove(user);
+                    continue;
+                }
+                int op = random.nextInt(total);
+                if (op < mix[0]) {
+                    int page = random.nextInt((restaurantIds.size() + pageSize - 1) / pageSize);
+                    int afterId = page == 0 ? 0 : restaurantIds.get(page * pageSize - 1);
+                    conditionalGet(MENUS, RootController.REST_URL + "?pageSize=" + pageSize + "&afterId=" + afterId, token);
+                } else if (op < mix[0] + mix[1]) {
+                    vote(user, restaurantIds.get(random.nextInt(restaurantIds.size())), token);
+                } else {
+                    conditionalGet(RESULT, RootController.REST_URL + "/vote/result", token);
+                }
+                if (!think.isZero()) {
+                    Thread.sleep(think.toMillis());
+                }
+            }
+            return recorder;
+        }
+
+        private String token(int user) {
+            String credentials = LoadSeeder.email(user) + ':' + LoadSeeder.PASSWORD;
+            HttpResponse<String> response = send(TOKEN, request(TokenController.REST_URL)
+                    .header("Authorization", "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)))
+                    .POST(HttpRequest.BodyPublishers.noBody()));
+            return response != null && response.statusCode() == 200 ?
+                    JsonUtil.readValue(response.body(), TokenTo.class).getToken() : null;
+        }
+
+        private void vote(int user, int restaurantId, String token) {
+            String url = RootController.REST_URL + "/vote?restaurantId=" + restaurantId;
+            if (voted.contains(user)) {
+                send(VOTE_PUT, authorized(url, token).PUT(HttpRequest.BodyPublishers.noBody()));
+            } else {
+                HttpResponse<String> response = send(VOTE_POST, authorized(url, token).POST(HttpRequest.BodyPublishers.noBody()));
+                if (response != null && response.statusCode() < 300) {
+                    voted.add(user);
+                }
+            }
+        }
+
+        private void conditionalGet(String endpoint, String url, String token) {
+            HttpRequest.Builder builder = authorized(url, token).GET();
+            String etag = etags.get(url);
+            if (etag != null) {
+                builder.header("If-None-Match", etag);
+            }
+            HttpResponse<String> response = send(endpoint, builder);
+            if (response != null) {
+                response.headers().firstValue("ETag").ifPresent(e -> etags.put(url, e));
+            }
+        }
+
+        private HttpRequest.Builder authorized(String url, String token) {
+            return request(url).header("Authorization", "Bearer " + token);
+        }
+
+        private HttpRequest.Builder request(String url) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + url)).timeout(Duration.ofSeconds(30));
+        }
+
+        //  null and status -1 on I/O error
+        private HttpResponse<String> send(String endpoint, HttpRequest.Builder builder) {
+            long start = System.nanoTime();
+            try {
+                HttpResponse<String> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+                recorder.record(endpoint, response.statusCode(), System.nanoTime() - start);
+                return response;
+            } catch (IOException e) {
+                recorder.record(endpoint, -1, System.nanoTime() - start);
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    private static class Seeder implements ApplicationListener<ApplicationStartedEvent> {
+        private final int users;
+        private final int restaurants;
+
+        private Seeder(int users, int restaurants) {
+            this.users = users;
+            this.restaurants = restaurants;
+        }
+
+        @Override
+        public void onApplicationEvent(ApplicationStartedEvent event) {
+            new LoadSeeder(event.getApplicationContext().getBean(JdbcTemplate.class)).seed(users, restaurants);
+        }
+    }
+}
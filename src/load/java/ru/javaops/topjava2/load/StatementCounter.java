@@ -0,0 +1,66 @@
+package ru.javaops.topjava2.load;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JDBC statements executed on all threads: requests, write-behind batches, schedulers.
+ * <p>
+ * Wraps the pool before the application proxies, batch execution counts as one statement like in SqlStatsDataSource.
+ * Statement.getConnection() returns the connection proxy, DataSourceUtils compares it with the transaction connection.
+ */
+class StatementCounter implements BeanPostProcessor {
+    private final LongAdder statements = new LongAdder();
+
+    long get() {
+        return statements.sum();
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        return bean instanceof DataSource dataSource ? proxy(DataSource.class, dataSource, null) : bean;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type, T target, Object connection) {
+        return (T) Proxy.newProxyInstance(StatementCounter.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.equals("equals")) {
+                        return proxy == args[0];
+                    } else if (name.equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    } else if (connection != null && name.equals("getConnection")) {
+                        return connection;
+                    } else if (target instanceof Statement && name.startsWith("execute")) {
+                        statements.increment();
+                    }
+                    Object result;
+                    try {
+                        result = method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Connection c && target instanceof DataSource) {
+                        return proxy(Connection.class, c, null);
+                    } else if (target instanceof Connection) {
+                        if (result instanceof CallableStatement s) {
+                            return proxy(CallableStatement.class, s, proxy);
+                        } else if (result instanceof PreparedStatement s) {
+                            return proxy(PreparedStatement.class, s, proxy);
+                        } else if (result instanceof Statement s) {
+                            return proxy(Statement.class, s, proxy);
+                        }
+                    }
+                    return result;
+                });
+    }
+}
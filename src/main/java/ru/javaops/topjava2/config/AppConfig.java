@@ -7,26 +7,33 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
 import org.h2.tools.Server;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import ru.javaops.topjava2.util.JsonUtil;
 
+import javax.sql.DataSource;
 import java.sql.SQLException;
+import java.time.Clock;
 import java.util.concurrent.TimeUnit;
 
 @Configuration
 @Slf4j
 @EnableCaching
+@EnableScheduling
 public class AppConfig {
 
+    //  remote access to the DB: jdbc:h2:tcp://localhost:9092/mem:voting
     @Bean(initMethod = "start", destroyMethod = "stop")
-    @Profile("!test")
-    Server h2Server() throws SQLException {
-        log.info("Start H2 TCP server");
-        return Server.createTcpServer("-tcp", "-tcpAllowOthers", "-tcpPort", "9092");
+    @ConditionalOnProperty(name = "h2.tcp.enabled", havingValue = "true")
+    Server h2Server(@Value("${h2.tcp.port:9092}") int port) throws SQLException {
+        log.info("Start H2 TCP server on port {}", port);
+        return Server.createTcpServer("-tcp", "-tcpAllowOthers", "-tcpPort", Integer.toString(port));
     }
 
     //    https://stackoverflow.com/a/46947975/548473
@@ -35,6 +42,24 @@ public class AppConfig {
         return new Hibernate5Module();
     }
 
+    //  statements per request, see SqlStatsFilter
+    @Bean
+    @ConditionalOnProperty(name = "sql.stats.enabled", havingValue = "true", matchIfMissing = true)
+    static BeanPostProcessor sqlStatsDataSource() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource ? SqlStatsDataSource.wrap(dataSource) : bean;
+            }
+        };
+    }
+
+    //  date and time of the voting day, replaced in tests
+    @Bean
+    Clock clock() {
+        return Clock.systemDefaultZone();
+    }
+
     @Autowired
     public void storeObjectMapper(ObjectMapper objectMapper) {
         JsonUtil.setMapper(objectMapper);
@@ -46,6 +71,7 @@ public class AppConfig {
                 Caffeine.newBuilder()
                         .maximumSize(1)
                         .expireAfterAccess(300, TimeUnit.SECONDS)
+                        .recordStats()
                         .build());
     }
 
@@ -55,6 +81,7 @@ public class AppConfig {
                 Caffeine.newBuilder()
                         .maximumSize(500)
                         .expireAfterAccess(300, TimeUnit.SECONDS)
+                        .recordStats()
                         .build());
     }
     @Bean
@@ -63,14 +90,7 @@ public class AppConfig {
                 Caffeine.newBuilder()
                         .maximumSize(500)
                         .expireAfterAccess(300, TimeUnit.SECONDS)
-                        .build());
-    }
-    @Bean
-    public CaffeineCache rootVote () {
-        return new CaffeineCache("rootVote",
-                Caffeine.newBuilder()
-                        .maximumSize(50)
-                        .expireAfterAccess(30, TimeUnit.MINUTES)
+                        .recordStats()
                         .build());
     }
     @Bean
@@ -79,6 +99,18 @@ public class AppConfig {
                 Caffeine.newBuilder()
                         .maximumSize(1)
                         .expireAfterAccess(60, TimeUnit.SECONDS)
+                        .recordStats()
+                        .build());
+    }
+
+    //  authenticated principals by credentials hash, see CachingAuthenticationProvider
+    @Bean
+    public CaffeineCache authUsers() {
+        return new CaffeineCache("authUsers",
+                Caffeine.newBuilder()
+                        .maximumSize(10_000)
+                        .expireAfterWrite(300, TimeUnit.SECONDS)
+                        .recordStats()
                         .build());
     }
 
@@ -0,0 +1,79 @@
+package ru.javaops.topjava2.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import ru.javaops.topjava2.web.AuthUser;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import static ru.javaops.topjava2.util.TransactionUtil.afterCommit;
+
+/**
+ * Caches authenticated principals by HMAC-SHA256 of the HTTP Basic credentials under a random per-process secret,
+ * so a repeated request of the same user costs neither the user query nor the password encoder check.
+ * <p>
+ * Entries of a user are evicted after commit of its update, enable/disable or delete.
+ * A lookup racing with such a commit may cache the old principal, the entry lives no longer than the cache TTL.
+ */
+@Slf4j
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private final AuthenticationProvider delegate;
+    private final Cache<Object, Object> cache;
+    private final SecretKeySpec secret;
+
+    public CachingAuthenticationProvider(AuthenticationProvider delegate, CaffeineCache authUsers) {
+        this.delegate = delegate;
+        this.cache = authUsers.getNativeCache();
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        this.secret = new SecretKeySpec(bytes, "HmacSHA256");
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String key = key(authentication.getName(), String.valueOf(authentication.getCredentials()));
+        if (cache.getIfPresent(key) instanceof AuthUser authUser) {
+            return new UsernamePasswordAuthenticationToken(authUser, null, authUser.getAuthorities());
+        }
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.getPrincipal() instanceof AuthUser authUser) {
+            cache.put(key, authUser);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+
+    public void evict(int userId) {
+        afterCommit(() -> {
+            cache.asMap().values().removeIf(v -> ((AuthUser) v).id() == userId);
+            log.debug("evict cached authentication of user {}", userId);
+        });
+    }
+
+    private String key(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(secret);
+            mac.update(username.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return Base64.getEncoder().encodeToString(mac.doFinal(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ru.javaops.topjava2.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * DataSource proxy that lets at most permits threads hold a connection, the others wait in a fair queue.
+ * <p>
+ * With virtual threads requests are not bounded by Tomcat max threads: thousands of them would wait
+ * in the pool handoff. Here they wait in FIFO order and fail after timeout like the pool does.
+ * A permit is released on the first close of the connection.
+ * Applied first, so the SQL statistics proxy wraps it and sees the statements.
+ */
+class DbPermitDataSource implements BeanPostProcessor, Ordered {
+    private final Semaphore permits;
+    private final Duration timeout;
+
+    DbPermitDataSource(int permits, Duration timeout) {
+        this.permits = new Semaphore(permits, true);
+        this.timeout = timeout;
+    }
+
+    int getWaiting() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        return bean instanceof DataSource dataSource ? wrap(dataSource) : bean;
+    }
+
+    @Override
+    public int getOrder() {
+        return HIGHEST_PRECEDENCE;
+    }
+
+    private DataSource wrap(DataSource dataSource) {
+        return (DataSource) Proxy.newProxyInstance(DbPermitDataSource.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.equals("equals")) {
+                        return proxy == args[0];
+                    } else if (name.equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    } else if (!name.equals("getConnection")) {
+                        return invoke(dataSource, method, args);
+                    }
+                    acquire();
+                    try {
+                        return release((Connection) invoke(dataSource, method, args));
+                    } catch (Throwable e) {
+                        permits.release();
+                        throw e;
+                    }
+                });
+    }
+
+    private void acquire() throws SQLException {
+        try {
+            if (!permits.tryAcquire(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("No DB permit available in " + timeout.toMillis() + "ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for DB permit", e);
+        }
+    }
+
+    private Connection release(Connection connection) {
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(DbPermitDataSource.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.equals("equals")) {
+                        return proxy == args[0];
+                    } else if (name.equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    } else if (name.equals("close")) {
+                        try {
+                            return invoke(connection, method, args);
+                        } finally {
+                            if (closed.compareAndSet(false, true)) {
+                                permits.release();
+                            }
+                        }
+                    }
+                    return invoke(connection, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
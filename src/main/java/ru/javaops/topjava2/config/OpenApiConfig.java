@@ -17,6 +17,11 @@ import org.springframework.context.annotation.Configuration;
         type = SecuritySchemeType.HTTP,
         scheme = "basic"
 )
+@SecurityScheme(
+        name = "bearerAuth",
+        type = SecuritySchemeType.HTTP,
+        scheme = "bearer"
+)
 @OpenAPIDefinition(
         info = @Info(
                 title = "REST API documentation",
@@ -24,7 +29,7 @@ import org.springframework.context.annotation.Configuration;
                 description = "A voting system for deciding where to have lunch. Course TopJava</a> (Graduation project solution)",
                 contact = @Contact(name = "Andrey Kozlov", email = "avgur33@gmail.com")
         ),
-        security = @SecurityRequirement(name = "basicAuth")
+        security = @SecurityRequirement(name = "bearerAuth")
 )
 public class OpenApiConfig {
 
@@ -0,0 +1,87 @@
+package ru.javaops.topjava2.config;
+
+import lombok.experimental.UtilityClass;
+import ru.javaops.topjava2.util.SqlStats;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.Arrays;
+
+/**
+ * JDBC proxy chain DataSource -> Connection -> Statement -> ResultSet, counts into {@link SqlStats#current()}.
+ * Unlike a Hibernate StatementInspector it sees JdbcTemplate batches too and measures execution time.
+ * Batch execution counts as one statement, rows are update counts or fetched result set rows.
+ */
+@UtilityClass
+class SqlStatsDataSource {
+
+    static DataSource wrap(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, T target, Object owner) {
+        return (T) Proxy.newProxyInstance(SqlStatsDataSource.class.getClassLoader(), new Class<?>[]{type}, new Handler(target, owner));
+    }
+
+    //  owner: proxy of the connection of a statement, of the statement of a result set.
+    //  Statement.getConnection() must return the proxy, DataSourceUtils compares it with the transaction connection
+    private record Handler(Object target, Object owner) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (owner != null && (name.equals("getConnection") || name.equals("getStatement"))) {
+                return owner;
+            }
+            SqlStats stats = SqlStats.current();
+            boolean execute = stats != null && target instanceof Statement && name.startsWith("execute");
+            long start = execute ? System.nanoTime() : 0;
+            Object result = null;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (execute) {
+                    stats.executed(System.nanoTime() - start, updated(result));
+                }
+            }
+            if (result instanceof Connection c && target instanceof DataSource) {
+                return proxy(Connection.class, c, null);
+            } else if (result instanceof CallableStatement s) {
+                return proxy(CallableStatement.class, s, proxy);
+            } else if (result instanceof PreparedStatement s) {
+                return proxy(PreparedStatement.class, s, proxy);
+            } else if (result instanceof Statement s && target instanceof Connection) {
+                return proxy(Statement.class, s, proxy);
+            } else if (result instanceof ResultSet rs && (name.equals("executeQuery") || name.equals("getResultSet"))) {
+                return proxy(ResultSet.class, rs, proxy);
+            } else if (stats != null && target instanceof ResultSet && name.equals("next") && Boolean.TRUE.equals(result)) {
+                stats.fetched();
+            }
+            return result;
+        }
+
+        private static long updated(Object result) {
+            if (result instanceof Integer i) {
+                return Math.max(0, i);
+            } else if (result instanceof Long l) {
+                return Math.max(0, l);
+            } else if (result instanceof int[] counts) {
+                return Arrays.stream(counts).filter(c -> c > 0).sum();
+            } else if (result instanceof long[] counts) {
+                return Arrays.stream(counts).filter(c -> c > 0).sum();
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ru.javaops.topjava2.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual threads mode (threads.virtual.enabled=true), needs JDK 21+ at runtime, startup fails on an older one.
+ * <p>
+ * Tomcat requests and application tasks (MVC async, @Async) run on a new virtual thread each instead of a pool
+ * of platform threads, a request blocked on JDBC no longer holds an OS thread.
+ * DB access is limited by {@link DbPermitDataSource} to threads.virtual.db-permits connections,
+ * waiting requests are shown by db.permits.waiting gauge.
+ * The executor is looked up reflectively, so the build stays on the project java.version.
+ */
+@Configuration
+@Slf4j
+@ConditionalOnProperty(name = "threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    @Bean
+    ExecutorService virtualThreadExecutor() {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            log.info("Requests and tasks run on virtual threads");
+            return executor;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("threads.virtual.enabled needs JDK 21+, running on " + Runtime.version());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual thread executor is not available", e);
+        }
+    }
+
+    @Bean
+    TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandler(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, "taskExecutor"})
+    AsyncTaskExecutor applicationTaskExecutor(ExecutorService virtualThreadExecutor) {
+        return new TaskExecutorAdapter(virtualThreadExecutor);
+    }
+
+    @Bean
+    static DbPermitDataSource dbPermitDataSource(@Value("${threads.virtual.db-permits}") int permits,
+                                                 @Value("${spring.datasource.hikari.connection-timeout:30000}") long timeoutMillis) {
+        return new DbPermitDataSource(permits, Duration.ofMillis(timeoutMillis));
+    }
+
+    @Bean
+    MeterBinder dbPermitMetrics(DbPermitDataSource dbPermitDataSource) {
+        return registry -> Gauge.builder("db.permits.waiting", dbPermitDataSource, DbPermitDataSource::getWaiting)
+                .register(registry);
+    }
+}
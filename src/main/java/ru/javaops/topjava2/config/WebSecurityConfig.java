@@ -5,7 +5,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -14,11 +18,15 @@ import org.springframework.security.config.annotation.web.configuration.WebSecur
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.web.authentication.AnonymousAuthenticationFilter;
 import ru.javaops.topjava2.model.Role;
 import ru.javaops.topjava2.model.User;
 import ru.javaops.topjava2.repository.UserRepository;
+import ru.javaops.topjava2.service.TokenService;
 import ru.javaops.topjava2.web.AuthUser;
+import ru.javaops.topjava2.web.user.TokenController;
 
+import javax.servlet.http.HttpServletResponse;
 import java.util.Optional;
 
 import static ru.javaops.topjava2.util.UserUtil.PASSWORD_ENCODER;
@@ -32,6 +40,8 @@ import static ru.javaops.topjava2.util.UserUtil.PASSWORD_ENCODER;
 public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
 
     private final UserRepository userRepository;
+    private final CaffeineCache authUsers;
+    private final TokenService tokenService;
 
     @Bean
     public UserDetailsService userDetailsService() {
@@ -43,10 +53,17 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         };
     }
 
+    @Bean
+    public CachingAuthenticationProvider authenticationProvider() {
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(userDetailsService());
+        provider.setPasswordEncoder(PASSWORD_ENCODER);
+        return new CachingAuthenticationProvider(provider, authUsers);
+    }
+
     @Autowired
-    public void configureGlobal(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(userDetailsService())
-                .passwordEncoder(PASSWORD_ENCODER);
+    public void configureGlobal(AuthenticationManagerBuilder auth) {
+        auth.authenticationProvider(authenticationProvider());
     }
 
     @Override
@@ -55,9 +72,31 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
                 .antMatchers("/api/admin/**").hasRole(Role.ADMIN.name())
                 .antMatchers(HttpMethod.POST, "/api/profile").anonymous()
                 .antMatchers("/api/**").authenticated()
-                .and().httpBasic()
+                //  scraped without a token: restrict by network or move to management.server.port
+                .antMatchers("/actuator/health", "/actuator/prometheus").permitAll()
+                .antMatchers("/actuator/**").hasRole(Role.ADMIN.name())
+                .and().addFilterBefore(new TokenAuthenticationFilter(tokenService), AnonymousAuthenticationFilter.class)
+                .exceptionHandling().authenticationEntryPoint((request, response, e) -> {
+                    response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+                    response.sendError(HttpServletResponse.SC_UNAUTHORIZED, e.getMessage());
+                })
                 .and().sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 .and().csrf().disable();
         http.headers().frameOptions().disable();
     }
+
+    //  HTTP Basic (password check) is accepted only to issue an access token
+    @Configuration
+    @Order(1)
+    public static class TokenAcquisitionConfig extends WebSecurityConfigurerAdapter {
+
+        @Override
+        protected void configure(HttpSecurity http) throws Exception {
+            http.antMatcher(TokenController.REST_URL)
+                    .authorizeRequests().anyRequest().authenticated()
+                    .and().httpBasic()
+                    .and().sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                    .and().csrf().disable();
+        }
+    }
 }
\ No newline at end of file
@@ -47,7 +47,7 @@ public class Vote extends BaseEntity {
 
 
     @ManyToOne(fetch = FetchType.LAZY)
-    @JoinColumn(name = "restaurant_id", nullable = false)
+    @JoinColumn(name = "restaurant_id", nullable = false, foreignKey = @ForeignKey(name = "vote_restaurant_fk"))
     @OnDelete(action = OnDeleteAction.CASCADE)
     @JsonBackReference(value = "restaurant-vote")
     @Hidden
@@ -0,0 +1,34 @@
+package ru.javaops.topjava2.model;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDate;
+
+//  Final vote count of the restaurant for the closed day
+@Entity
+@Table(name = "vote_daily_summary", uniqueConstraints =
+        {@UniqueConstraint(columnNames = {"reg_date", "restaurant_id"}, name = "vote_daily_summary_unique_reg_date_restaurant_id_idx")})
+@Getter
+@Setter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class VoteDailySummary extends BaseEntity {
+
+    @Column(name = "reg_date", nullable = false)
+    @NotNull
+    private LocalDate regDate;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "restaurant_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Restaurant restaurant;
+
+    @Column(name = "votes", nullable = false)
+    private long votes;
+}
@@ -3,10 +3,15 @@ package ru.javaops.topjava2.repository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
+import ru.javaops.topjava2.error.NotFoundException;
 import ru.javaops.topjava2.model.Dish;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Transactional(readOnly = true)
 public interface DishRepository extends BaseRepository<Dish> {
@@ -17,4 +22,20 @@ public interface DishRepository extends BaseRepository<Dish> {
     @Query("SELECT m FROM Dish m JOIN FETCH m.restaurant WHERE m.id =:id ")
     Optional<Dish> findByIdWithRestaurant(Integer id);
 
+    //  [dishId, restaurantId]
+    @Query("SELECT d.id, d.restaurant.id FROM Dish d WHERE d.id IN :ids")
+    List<Object[]> getRestaurantIds(Collection<Integer> ids);
+
+    List<Dish> findAllByIdInAndRestaurantId(Collection<Integer> ids, int restaurantId);
+
+    //  all dishes in one query, in order of ids; missing and other restaurant's dishes reported together
+    default List<Dish> getAllOfRestaurant(Collection<Integer> ids, int restaurantId) {
+        Map<Integer, Dish> found = findAllByIdInAndRestaurantId(ids, restaurantId).stream()
+                .collect(Collectors.toMap(Dish::id, Function.identity()));
+        List<Integer> missing = ids.stream().filter(id -> !found.containsKey(id)).distinct().toList();
+        if (!missing.isEmpty()) {
+            throw new NotFoundException("Dishes with ids=" + missing + " not found for restaurant id=" + restaurantId);
+        }
+        return ids.stream().map(found::get).toList();
+    }
 }
@@ -1,6 +1,5 @@
 package ru.javaops.topjava2.repository;
 
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -8,19 +7,24 @@ import org.springframework.transaction.annotation.Transactional;
 import ru.javaops.topjava2.model.Menu;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Transactional(readOnly = true)
 public interface MenuRepository  extends BaseRepository<Menu>{
 
-    @EntityGraph(attributePaths = {"restaurant"}, type = EntityGraph.EntityGraphType.LOAD)
+    @EntityGraph(attributePaths = {"restaurant", "dishes"}, type = EntityGraph.EntityGraphType.LOAD)
     @Query("SELECT m FROM Menu m WHERE m.id=:id")
     Optional<Menu> findByIdWithRestaurant(Integer id);
 
-    @EntityGraph(attributePaths = {"restaurant"}, type = EntityGraph.EntityGraphType.LOAD)
-    @Query("SELECT m FROM Menu m WHERE m.forDate=current_date")
-    List<Menu> getToday(Pageable pageable);
+    @Query("SELECT DISTINCT m FROM Menu m JOIN FETCH m.restaurant LEFT JOIN FETCH m.dishes WHERE m.forDate=:forDate " +
+            "ORDER BY m.restaurant.id")
+    List<Menu> getWithDishes(LocalDate forDate);
+
+    @Query("SELECT DISTINCT m FROM Menu m JOIN FETCH m.restaurant LEFT JOIN FETCH m.dishes " +
+            "WHERE m.forDate=:forDate AND m.restaurant.id IN :restaurantIds ORDER BY m.restaurant.id")
+    List<Menu> getWithDishes(LocalDate forDate, Collection<Integer> restaurantIds);
 
     @Query("SELECT m FROM Menu m WHERE m.restaurant.id=:restaurantId AND m.forDate >=:startDate AND m.forDate <=:endDate")
     List<Menu> findAllByRestaurant(Integer restaurantId, LocalDate startDate, LocalDate endDate);
@@ -28,6 +32,13 @@ public interface MenuRepository  extends BaseRepository<Menu>{
     @Query("SELECT m FROM Menu m WHERE m.restaurant.id=:restaurantId AND m.forDate=current_date")
     Optional<Menu> findByRestaurantId(Integer restaurantId);
 
+    @Query("SELECT m.restaurant.id FROM Menu m WHERE m.forDate=:forDate")
+    List<Integer> getRestaurantIds(LocalDate forDate);
+
+    //  [menuId, restaurantId, forDate]
+    @Query("SELECT m.id, m.restaurant.id, m.forDate FROM Menu m WHERE m.forDate IN :dates")
+    List<Object[]> getKeys(Collection<LocalDate> dates);
+
     @Modifying
     @Query("DELETE FROM Menu m WHERE m.restaurant.id =:id")
     void deleteByRestaurantId(int id);
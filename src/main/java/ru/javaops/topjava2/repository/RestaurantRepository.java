@@ -1,9 +1,14 @@
 package ru.javaops.topjava2.repository;
 
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.transaction.annotation.Transactional;
 import ru.javaops.topjava2.model.Restaurant;
 
+import java.util.List;
+
 @Transactional(readOnly = true)
 public interface RestaurantRepository extends BaseRepository<Restaurant>{
 
-    }
+    @Query("SELECT r.id FROM Restaurant r")
+    List<Integer> getIds();
+}
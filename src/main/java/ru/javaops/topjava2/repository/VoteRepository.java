@@ -1,35 +1,49 @@
 package ru.javaops.topjava2.repository;
 
 import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.transaction.annotation.Transactional;
 import ru.javaops.topjava2.model.Vote;
+import ru.javaops.topjava2.to.VoteTo;
+
+import javax.persistence.QueryHint;
 
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 @Transactional(readOnly = true)
 public interface VoteRepository extends BaseRepository<Vote>{
 
-    @EntityGraph(attributePaths = {"restaurant"}, type = EntityGraph.EntityGraphType.LOAD)
-    @Query("SELECT v FROM Vote v WHERE v.regDate=current_date")
-    List<Vote> getResult();
+    //  [userId, restaurantId]
+    @Query("SELECT v.userId, v.restaurant.id FROM Vote v WHERE v.regDate=:regDate")
+    List<Object[]> getUserVotes(LocalDate regDate);
 
-    @EntityGraph(attributePaths = {"restaurant"}, type = EntityGraph.EntityGraphType.LOAD)
-    @Query("SELECT v FROM Vote v WHERE v.regDate >=:startDate AND v.regDate <=:endDate")
-    List<Vote> getResultHistory(LocalDate startDate, LocalDate endDate);
+    //  create or change vote in one statement, unknown restaurant is rejected by FK
+    //  http://www.h2database.com/html/commands.html#merge_into
+    @Transactional
+    @Modifying
+    @Query(value = "MERGE INTO vote (reg_date, user_id, restaurant_id, reg_time) KEY (reg_date, user_id) " +
+            "VALUES (:regDate, :userId, :restaurantId, :regTime)", nativeQuery = true)
+    void upsert(LocalDate regDate, int userId, int restaurantId, LocalTime regTime);
 
     @EntityGraph(attributePaths = {"restaurant"}, type = EntityGraph.EntityGraphType.LOAD)
-    @Query("SELECT v FROM Vote v WHERE v.userId=:id AND v.regDate=current_date")
-    Optional<Vote> findByUserId(int id);
+    @Query("SELECT v FROM Vote v WHERE v.userId=:id AND v.regDate=:regDate")
+    Optional<Vote> findByUserId(int id, LocalDate regDate);
 
     @EntityGraph(attributePaths = {"restaurant"}, type = EntityGraph.EntityGraphType.LOAD)
     @Query("SELECT v FROM Vote v WHERE v.userId=:id AND v.regDate >=:startDate AND v.regDate <=:endDate")
     List<Vote> findAllByUserIdFilter(int id, LocalDate startDate, LocalDate endDate);
 
-    //https://www.baeldung.com/jpa-queries-custom-result-with-aggregation-functions
-    /*@Query("SELECT new ru.javaops.topjava2.model.RestaurantC(v.restaurant.id,v.restaurant.name,v.restaurant.location, count(v)) FROM Vote v JOIN v.restaurant WHERE v.regDate=current_date GROUP BY v.restaurant.id")
-    List<RestaurantTo> getResultVotes();*/
-
-
+    //  DTO projection: rows are not kept in persistence context while streaming
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new ru.javaops.topjava2.to.VoteTo(v.id, v.regDate, v.regTime, r.name, r.location) " +
+            "FROM Vote v JOIN v.restaurant r WHERE v.userId=:id AND v.regDate >=:startDate AND v.regDate <=:endDate " +
+            "ORDER BY v.id")
+    Stream<VoteTo> streamAllByUserIdFilter(int id, LocalDate startDate, LocalDate endDate);
 }
@@ -0,0 +1,57 @@
+package ru.javaops.topjava2.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.javaops.topjava2.model.VoteDailySummary;
+import ru.javaops.topjava2.to.RestaurantVoteCount;
+
+import javax.persistence.QueryHint;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+@Transactional(readOnly = true)
+public interface VoteSummaryRepository extends BaseRepository<VoteDailySummary> {
+
+    @Query("SELECT new ru.javaops.topjava2.to.RestaurantVoteCount(r.id, r.name, r.location, s.regDate, s.votes) " +
+            "FROM VoteDailySummary s JOIN s.restaurant r WHERE s.regDate >=:startDate AND s.regDate <=:endDate " +
+            "ORDER BY r.id, s.regDate")
+    List<RestaurantVoteCount> getResultHistory(LocalDate startDate, LocalDate endDate);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new ru.javaops.topjava2.to.RestaurantVoteCount(r.id, r.name, r.location, s.regDate, s.votes) " +
+            "FROM VoteDailySummary s JOIN s.restaurant r WHERE s.regDate >=:startDate AND s.regDate <=:endDate " +
+            "ORDER BY s.regDate, r.id")
+    Stream<RestaurantVoteCount> streamResultHistory(LocalDate startDate, LocalDate endDate);
+
+    @Query("SELECT MAX(s.regDate) FROM VoteDailySummary s")
+    LocalDate getLastDate();
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM VoteDailySummary s WHERE s.regDate >=:startDate AND s.regDate <=:endDate")
+    void deleteRange(LocalDate startDate, LocalDate endDate);
+
+    @Transactional
+    @Modifying
+    //  a day is in vote or, after VoteArchive moved it, in vote_archive
+    @Query(value = "INSERT INTO vote_daily_summary (reg_date, restaurant_id, votes) " +
+            "SELECT reg_date, restaurant_id, COUNT(*) FROM vote WHERE reg_date >=:startDate AND reg_date <=:endDate " +
+            "GROUP BY reg_date, restaurant_id " +
+            "UNION ALL " +
+            "SELECT reg_date, restaurant_id, COUNT(*) FROM vote_archive WHERE reg_date >=:startDate AND reg_date <=:endDate " +
+            "GROUP BY reg_date, restaurant_id", nativeQuery = true)
+    void insertRange(LocalDate startDate, LocalDate endDate);
+
+    //  own transaction: summary must not be rolled back together with the caller
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    default void summarize(LocalDate startDate, LocalDate endDate) {
+        deleteRange(startDate, endDate);
+        insertRange(startDate, endDate);
+    }
+}
@@ -0,0 +1,166 @@
+package ru.javaops.topjava2.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.javaops.topjava2.repository.DishRepository;
+import ru.javaops.topjava2.repository.MenuRepository;
+import ru.javaops.topjava2.to.MenuImportResult;
+import ru.javaops.topjava2.to.MenuImportTo;
+
+import java.sql.Date;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static ru.javaops.topjava2.web.GlobalExceptionHandler.EXCEPTION_DUPLICATE_MENU;
+
+/**
+ * Bulk menu publishing: all records are validated with a constant number of queries,
+ * valid menus and their dishes are inserted in JDBC batches of hibernate.jdbc.batch_size
+ * in one transaction, invalid records are reported and skipped.
+ */
+@Service
+@Slf4j
+public class MenuPublisher {
+    private static final String INSERT_MENU = "INSERT INTO menu (for_date, restaurant_id) VALUES (?,?)";
+    private static final String INSERT_MENU_DISH = "INSERT INTO menu_dishes (menu_id, dishes_id) VALUES (?,?)";
+    private static final MenuImportTo EMPTY = new MenuImportTo(null, null, null);
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:20}")
+    private int batchSize;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MenuRepository menuRepository;
+    private final DishRepository dishRepository;
+    private final RestaurantDirectory restaurantDirectory;
+    private final MenuSnapshot menuSnapshot;
+    private final Clock clock;
+
+    public MenuPublisher(JdbcTemplate jdbcTemplate, MenuRepository menuRepository, DishRepository dishRepository,
+                         RestaurantDirectory restaurantDirectory, MenuSnapshot menuSnapshot, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.menuRepository = menuRepository;
+        this.dishRepository = dishRepository;
+        this.restaurantDirectory = restaurantDirectory;
+        this.menuSnapshot = menuSnapshot;
+        this.clock = clock;
+    }
+
+    @Transactional
+    public List<MenuImportResult> publish(List<MenuImportTo> menus) {
+        LocalDate today = LocalDate.now(clock);
+        Record[] records = new Record[menus.size()];
+        for (int i = 0; i < records.length; i++) {
+            MenuImportTo to = Objects.requireNonNullElse(menus.get(i), EMPTY);
+            records[i] = new Record(i, to.getRestaurantId(), to.getForDate() == null ? today : to.getForDate(), to.getDishes());
+            records[i].error = check(records[i], today);
+        }
+
+        Set<LocalDate> dates = new HashSet<>();
+        Set<Integer> dishIds = new HashSet<>();
+        for (Record r : valid(records)) {
+            dates.add(r.forDate);
+            dishIds.addAll(r.dishes);
+        }
+        if (dates.isEmpty()) {
+            return report(records);
+        }
+
+        Map<Integer, Integer> dishRestaurants = dishRepository.getRestaurantIds(dishIds).stream()
+                .collect(Collectors.toMap(row -> (Integer) row[0], row -> (Integer) row[1]));
+        Set<Key> published = getKeys(dates).keySet();
+        Set<Key> requested = new HashSet<>();
+        for (Record r : valid(records)) {
+            int restaurantId = r.restaurantId;
+            List<Integer> foreign = r.dishes.stream()
+                    .filter(id -> !Objects.equals(dishRestaurants.get(id), restaurantId))
+                    .distinct().toList();
+            if (!foreign.isEmpty()) {
+                r.error = "Dishes with ids=" + foreign + " not found for restaurant id=" + restaurantId;
+            } else if (published.contains(r.key()) || !requested.add(r.key())) {
+                r.error = EXCEPTION_DUPLICATE_MENU;
+            }
+        }
+
+        List<Record> inserted = valid(records);
+        jdbcTemplate.batchUpdate(INSERT_MENU, inserted, batchSize, (ps, r) -> {
+            ps.setDate(1, Date.valueOf(r.forDate));
+            ps.setInt(2, r.restaurantId);
+        });
+        //  generated ids are read back by unique (for_date, restaurant_id)
+        Map<Key, Integer> menuIds = getKeys(dates);
+        List<int[]> menuDishes = new ArrayList<>();
+        for (Record r : inserted) {
+            r.menuId = menuIds.get(r.key());
+            r.dishes.forEach(dishId -> menuDishes.add(new int[]{r.menuId, dishId}));
+        }
+        jdbcTemplate.batchUpdate(INSERT_MENU_DISH, menuDishes, batchSize, (ps, row) -> {
+            ps.setInt(1, row[0]);
+            ps.setInt(2, row[1]);
+        });
+
+        inserted.stream()
+                .collect(Collectors.groupingBy(r -> r.forDate, Collectors.mapping(r -> r.restaurantId, Collectors.toList())))
+                .forEach((forDate, restaurantIds) -> {
+                    restaurantDirectory.menusCreated(restaurantIds, forDate);
+                    menuSnapshot.menusCreated(restaurantIds, forDate);
+                });
+        log.info("published {} of {} menus", inserted.size(), records.length);
+        return report(records);
+    }
+
+    private String check(Record r, LocalDate today) {
+        if (r.restaurantId == null || !restaurantDirectory.exists(r.restaurantId)) {
+            return "Restaurant with id=" + r.restaurantId + " not found";
+        }
+        if (r.dishes == null || r.dishes.size() < 2 || r.dishes.size() > 5 || r.dishes.contains(null)) {
+            return "Wrong dishes number";
+        }
+        if (r.forDate.isBefore(today)) {
+            return "You can't change old menu";
+        }
+        return null;
+    }
+
+    private Map<Key, Integer> getKeys(Collection<LocalDate> dates) {
+        return menuRepository.getKeys(dates).stream()
+                .collect(Collectors.toMap(row -> new Key((Integer) row[1], (LocalDate) row[2]), row -> (Integer) row[0]));
+    }
+
+    private static List<Record> valid(Record[] records) {
+        return Arrays.stream(records).filter(r -> r.error == null).toList();
+    }
+
+    private static List<MenuImportResult> report(Record[] records) {
+        return Arrays.stream(records)
+                .map(r -> new MenuImportResult(r.index, r.restaurantId, r.forDate, r.menuId, r.error))
+                .toList();
+    }
+
+    private record Key(int restaurantId, LocalDate forDate) {
+    }
+
+    private static class Record {
+        private final int index;
+        private final Integer restaurantId;
+        private final LocalDate forDate;
+        private final List<Integer> dishes;
+        private String error;
+        private Integer menuId;
+
+        private Record(int index, Integer restaurantId, LocalDate forDate, List<Integer> dishes) {
+            this.index = index;
+            this.restaurantId = restaurantId;
+            this.forDate = forDate;
+            this.dishes = dishes;
+        }
+
+        private Key key() {
+            return new Key(restaurantId, forDate);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package ru.javaops.topjava2.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import ru.javaops.topjava2.error.IllegalRequestDataException;
+import ru.javaops.topjava2.repository.MenuRepository;
+import ru.javaops.topjava2.to.MenuTo;
+import ru.javaops.topjava2.util.JsonBytes;
+import ru.javaops.topjava2.util.MenuUtil;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static ru.javaops.topjava2.util.TransactionUtil.afterCommit;
+
+/**
+ * Immutable snapshot of today menus ordered by restaurant id, pages are sliced from it without DB access.
+ * <p>
+ * Snapshot is loaded at startup and on the first access after day rollover. After each committed change
+ * of a menu, its dishes or its restaurant only menus of the changed restaurants are reloaded
+ * and a new snapshot version is published, readers switch to it atomically.
+ * Snapshot of the next day may be loaded ahead by {@link #prepare}, it is kept up to date the same way
+ * and switched to at rollover without DB access.
+ */
+@Service
+@Slf4j
+public class MenuSnapshot {
+    private static final int MAX_CACHED_PAGES = 64;
+
+    private final MenuRepository menuRepository;
+    private final Clock clock;
+
+    private volatile Snapshot snapshot;
+    private volatile Snapshot next;
+
+    public MenuSnapshot(MenuRepository menuRepository, Clock clock) {
+        this.menuRepository = menuRepository;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        current();
+    }
+
+    //  menus of restaurants with id > afterId, serialized once per snapshot version
+    public JsonBytes getPageJson(int afterId, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalRequestDataException("Page size must be positive");
+        }
+        Snapshot s = current();
+        long key = (long) afterId << 32 | pageSize;
+        JsonBytes json = s.pages.get(key);
+        if (json == null) {
+            json = JsonBytes.of(s.getPage(afterId, pageSize));
+            if (s.pages.size() < MAX_CACHED_PAGES) {
+                s.pages.put(key, json);
+            }
+        }
+        return json;
+    }
+
+    public void restaurantChanged(int restaurantId) {
+        restaurantsChanged(List.of(restaurantId));
+    }
+
+    //  menu created/updated/deleted, dish or restaurant updated, restaurant deleted
+    public void restaurantsChanged(Collection<Integer> restaurantIds) {
+        afterCommit(() -> reload(restaurantIds, null));
+    }
+
+    //  menus published for the date: only the snapshot of that date (today or prepared ahead) is reloaded
+    public void menusCreated(Collection<Integer> restaurantIds, LocalDate forDate) {
+        afterCommit(() -> reload(restaurantIds, forDate));
+    }
+
+    //  load menus of the date ahead, e.g. tomorrow menus after voting is over
+    public synchronized void prepare(LocalDate date) {
+        Snapshot s = current();
+        if (!date.isAfter(s.date)) {
+            return;
+        }
+        next = new Snapshot(date, 0, MenuUtil.getTos(menuRepository.getWithDishes(date)));
+        log.info("prepare menu snapshot for {}: {} menus", date, next.menus.size());
+    }
+
+    //  snapshots of any date if forDate is null
+    private synchronized void reload(Collection<Integer> restaurantIds, @Nullable LocalDate forDate) {
+        Snapshot s = current();
+        if (forDate == null || s.date.equals(forDate)) {
+            snapshot = reload(s, restaurantIds);
+            log.debug("menu snapshot for {} version {}: {} menus", s.date, snapshot.version, snapshot.menus.size());
+        }
+        Snapshot n = next;
+        if (n != null && (forDate == null || n.date.equals(forDate))) {
+            next = reload(n, restaurantIds);
+        }
+    }
+
+    private Snapshot reload(Snapshot s, Collection<Integer> restaurantIds) {
+        Map<Integer, MenuTo> menus = new TreeMap<>();
+        s.menus.forEach(m -> menus.put(m.getId(), m));
+        restaurantIds.forEach(menus::remove);
+        MenuUtil.getTos(menuRepository.getWithDishes(s.date, restaurantIds))
+                .forEach(m -> menus.put(m.getId(), m));
+        return new Snapshot(s.date, s.version + 1, List.copyOf(menus.values()));
+    }
+
+    private Snapshot current() {
+        LocalDate today = LocalDate.now(clock);
+        Snapshot s = snapshot;
+        if (s == null || !s.date.equals(today)) {
+            synchronized (this) {
+                s = snapshot;
+                if (s == null || !s.date.equals(today)) {
+                    long version = s == null ? 1 : s.version + 1;
+                    Snapshot n = next;
+                    next = null;
+                    if (n != null && n.date.equals(today)) {
+                        s = new Snapshot(today, version, n.menus);
+                        log.info("switch to prepared menu snapshot for {} version {}: {} menus", today, s.version, s.menus.size());
+                    } else {
+                        s = new Snapshot(today, version, MenuUtil.getTos(menuRepository.getWithDishes(today)));
+                        log.info("load menu snapshot for {} version {}: {} menus", today, s.version, s.menus.size());
+                    }
+                    snapshot = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    private static class Snapshot {
+        private final LocalDate date;
+        private final long version;
+        private final List<MenuTo> menus;
+        private final int[] restaurantIds;
+        private final ConcurrentMap<Long, JsonBytes> pages = new ConcurrentHashMap<>();
+
+        private Snapshot(LocalDate date, long version, List<MenuTo> menus) {
+            this.date = date;
+            this.version = version;
+            this.menus = menus;
+            this.restaurantIds = menus.stream().mapToInt(MenuTo::getId).toArray();
+        }
+
+        private List<MenuTo> getPage(int afterId, int pageSize) {
+            int from = Arrays.binarySearch(restaurantIds, afterId);
+            from = from >= 0 ? from + 1 : -from - 1;
+            return menus.subList(from, (int) Math.min((long) from + pageSize, menus.size()));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package ru.javaops.topjava2.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.javaops.topjava2.error.IllegalRequestDataException;
+import ru.javaops.topjava2.error.NotFoundException;
+import ru.javaops.topjava2.repository.MenuRepository;
+import ru.javaops.topjava2.repository.RestaurantRepository;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+import static ru.javaops.topjava2.util.TransactionUtil.afterCommit;
+
+/**
+ * Ids of live restaurants and of restaurants with menu for today, to validate votes without DB access.
+ * <p>
+ * Bitmaps are loaded at startup (today menus again on the first access after day rollover)
+ * and replaced copy-on-write after each committed restaurant/menu create or delete,
+ * so readers never lock and never see a bitmap under modification.
+ */
+@Service
+@Slf4j
+public class RestaurantDirectory {
+
+    private final RestaurantRepository restaurantRepository;
+    private final MenuRepository menuRepository;
+    private final Clock clock;
+
+    private volatile BitSet restaurants;
+    private volatile Day day;
+
+    public RestaurantDirectory(RestaurantRepository restaurantRepository, MenuRepository menuRepository, Clock clock) {
+        this.restaurantRepository = restaurantRepository;
+        this.menuRepository = menuRepository;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        restaurants();
+        current();
+    }
+
+    public boolean exists(int restaurantId) {
+        return restaurantId >= 0 && restaurants().get(restaurantId);
+    }
+
+    public boolean hasTodayMenu(int restaurantId) {
+        return restaurantId >= 0 && current().withMenu.get(restaurantId);
+    }
+
+    public void checkVotable(int restaurantId) {
+        if (!exists(restaurantId)) {
+            throw new NotFoundException("Restaurant with id=" + restaurantId + " not found");
+        }
+        if (!hasTodayMenu(restaurantId)) {
+            throw new IllegalRequestDataException("Restaurant with id=" + restaurantId + " has no menu for today");
+        }
+    }
+
+    public void restaurantCreated(int restaurantId) {
+        afterCommit(() -> {
+            synchronized (this) {
+                restaurants = with(restaurants(), restaurantId, true);
+            }
+        });
+    }
+
+    //  menus of the restaurant are deleted with it
+    public void restaurantDeleted(int restaurantId) {
+        afterCommit(() -> {
+            synchronized (this) {
+                restaurants = with(restaurants(), restaurantId, false);
+                Day d = current();
+                day = new Day(d.date, with(d.withMenu, restaurantId, false));
+            }
+        });
+    }
+
+    public void menuCreated(int restaurantId, LocalDate forDate) {
+        menusChanged(List.of(restaurantId), forDate, true);
+    }
+
+    public void menusCreated(Collection<Integer> restaurantIds, LocalDate forDate) {
+        menusChanged(restaurantIds, forDate, true);
+    }
+
+    public void menuDeleted(int restaurantId, LocalDate forDate) {
+        menusChanged(List.of(restaurantId), forDate, false);
+    }
+
+    private void menusChanged(Collection<Integer> restaurantIds, LocalDate forDate, boolean present) {
+        afterCommit(() -> {
+            synchronized (this) {
+                Day d = current();
+                if (d.date.equals(forDate)) {
+                    day = new Day(d.date, with(d.withMenu, restaurantIds, present));
+                }
+            }
+        });
+    }
+
+    private BitSet restaurants() {
+        BitSet ids = restaurants;
+        if (ids == null) {
+            synchronized (this) {
+                ids = restaurants;
+                if (ids == null) {
+                    ids = toBitSet(restaurantRepository.getIds());
+                    log.info("load {} restaurant ids", ids.cardinality());
+                    restaurants = ids;
+                }
+            }
+        }
+        return ids;
+    }
+
+    private Day current() {
+        LocalDate today = LocalDate.now(clock);
+        Day d = day;
+        if (d == null || !d.date.equals(today)) {
+            synchronized (this) {
+                d = day;
+                if (d == null || !d.date.equals(today)) {
+                    d = new Day(today, toBitSet(menuRepository.getRestaurantIds(today)));
+                    log.info("load {} restaurants with menu for {}", d.withMenu.cardinality(), today);
+                    day = d;
+                }
+            }
+        }
+        return d;
+    }
+
+    private static BitSet with(BitSet ids, int id, boolean present) {
+        return with(ids, List.of(id), present);
+    }
+
+    private static BitSet with(BitSet ids, Collection<Integer> changed, boolean present) {
+        BitSet copy = (BitSet) ids.clone();
+        changed.forEach(id -> copy.set(id, present));
+        return copy;
+    }
+
+    private static BitSet toBitSet(List<Integer> ids) {
+        BitSet bitSet = new BitSet();
+        ids.forEach(bitSet::set);
+        return bitSet;
+    }
+
+    private record Day(LocalDate date, BitSet withMenu) {
+    }
+}
@@ -0,0 +1,133 @@
+package ru.javaops.topjava2.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.javaops.topjava2.util.JsonBytes;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes today's vote result to Server-Sent Events subscribers.
+ * <p>
+ * At most vote.result.stream.max-rate times per second the {@link VoteTally} version is checked and,
+ * if votes changed, the result is serialized once and queued to every subscriber.
+ * Each event holds the full result (one entry per restaurant), so a coalesced or dropped event leaves nothing
+ * for the client to reconcile. A subscriber whose buffer of vote.result.stream.buffer events is full is disconnected.
+ */
+@Service
+@Slf4j
+public class ResultBroadcaster {
+
+    @Value("${vote.result.stream.max-rate:4}")
+    private int maxRate;
+
+    @Value("${vote.result.stream.buffer:8}")
+    private int bufferSize;
+
+    @Value("${vote.result.stream.timeout:30m}")
+    private Duration timeout;
+
+    private final VoteTally voteTally;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService ticker;
+    private ExecutorService sender;
+    private long broadcastVersion = -1;
+
+    public ResultBroadcaster(VoteTally voteTally, MeterRegistry registry) {
+        this.voteTally = voteTally;
+        Gauge.builder("vote.result.subscribers", subscribers, Set::size).register(registry);
+    }
+
+    @PostConstruct
+    void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "vote-result-ticker"));
+        sender = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()),
+                r -> new Thread(r, "vote-result-sender"));
+        ticker.scheduleWithFixedDelay(this::tick, 0, Math.max(1, 1000 / maxRate), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        ticker.shutdownNow();
+        sender.shutdownNow();
+        subscribers.forEach(s -> s.emitter.complete());
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter, new ArrayBlockingQueue<>(bufferSize));
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        log.debug("result subscriber added, {} in total", subscribers.size());
+        offer(subscriber, voteTally.getVersion(), voteTally.getResultJson());
+        return emitter;
+    }
+
+    private void tick() {
+        try {
+            if (subscribers.isEmpty()) {
+                return;
+            }
+            long version = voteTally.getVersion();
+            if (version != broadcastVersion) {
+                broadcastVersion = version;
+                JsonBytes result = voteTally.getResultJson();
+                subscribers.forEach(s -> offer(s, version, result));
+            }
+        } catch (RuntimeException e) {
+            log.error("Vote result broadcast failure", e);
+        }
+    }
+
+    private void offer(Subscriber s, long version, JsonBytes result) {
+        SseEmitter.SseEventBuilder event = SseEmitter.event()
+                .id(Long.toString(version))
+                .name("result")
+                .data(result.body(), MediaType.APPLICATION_JSON);
+        if (!s.queue.offer(event)) {
+            log.debug("drop slow result subscriber");
+            subscribers.remove(s);
+            s.emitter.complete();
+        } else if (s.draining.compareAndSet(false, true)) {
+            sender.execute(() -> drain(s));
+        }
+    }
+
+    private void drain(Subscriber s) {
+        try {
+            SseEmitter.SseEventBuilder event;
+            while ((event = s.queue.poll()) != null) {
+                s.emitter.send(event);
+            }
+        } catch (IOException | IllegalStateException e) {
+            //  client gone or emitter already completed
+            subscribers.remove(s);
+            s.emitter.completeWithError(e);
+        } finally {
+            s.draining.set(false);
+        }
+        if (!s.queue.isEmpty() && subscribers.contains(s) && s.draining.compareAndSet(false, true)) {
+            sender.execute(() -> drain(s));
+        }
+    }
+
+    private record Subscriber(SseEmitter emitter, BlockingQueue<SseEmitter.SseEventBuilder> queue, AtomicBoolean draining) {
+        private Subscriber(SseEmitter emitter, BlockingQueue<SseEmitter.SseEventBuilder> queue) {
+            this(emitter, queue, new AtomicBoolean());
+        }
+    }
+}
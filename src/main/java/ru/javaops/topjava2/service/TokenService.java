@@ -0,0 +1,128 @@
+package ru.javaops.topjava2.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import ru.javaops.topjava2.model.Role;
+import ru.javaops.topjava2.model.User;
+import ru.javaops.topjava2.to.TokenTo;
+import ru.javaops.topjava2.web.AuthUser;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import static ru.javaops.topjava2.util.TransactionUtil.afterCommit;
+
+/**
+ * Short-lived access tokens signed with HMAC-SHA256: {@code base64url(payload).base64url(signature)},
+ * payload is {@code id:issued:expires:roles:email}. A token is verified without DB access.
+ * <p>
+ * Updating, disabling or deleting a user revokes all its tokens issued before that moment.
+ * Revocations are kept in memory for auth.token.ttl, after that the revoked tokens are expired anyway.
+ */
+@Service
+@Slf4j
+public class TokenService {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    @Value("${auth.token.secret:}")
+    private String secret;
+
+    @Value("${auth.token.ttl:15m}")
+    private Duration ttl;
+
+    private SecretKeySpec key;
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    //  user id -> revocation time, millis
+    private final ConcurrentMap<Integer, Long> revoked = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        byte[] bytes;
+        if (StringUtils.hasText(secret)) {
+            bytes = Base64.getDecoder().decode(secret);
+        } else {
+            log.warn("auth.token.secret is not set, tokens are signed with a random key and invalid after restart");
+            bytes = new byte[32];
+            new SecureRandom().nextBytes(bytes);
+        }
+        key = new SecretKeySpec(bytes, ALGORITHM);
+    }
+
+    public TokenTo issue(AuthUser authUser) {
+        long issued = System.currentTimeMillis();
+        long expires = issued + ttl.toMillis();
+        User user = authUser.getUser();
+        String roles = user.getRoles().stream().map(Role::name).collect(Collectors.joining(","));
+        byte[] payload = String.join(":", String.valueOf(user.id()), String.valueOf(issued), String.valueOf(expires),
+                roles, user.getEmail()).getBytes(StandardCharsets.UTF_8);
+        return new TokenTo(ENCODER.encodeToString(payload) + '.' + ENCODER.encodeToString(sign(payload)), ttl.toSeconds());
+    }
+
+    //  null for malformed, forged, expired or revoked token
+    public AuthUser verify(String token) {
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        try {
+            byte[] payload = DECODER.decode(token.substring(0, dot));
+            if (!MessageDigest.isEqual(sign(payload), DECODER.decode(token.substring(dot + 1)))) {
+                return null;
+            }
+            String[] parts = new String(payload, StandardCharsets.UTF_8).split(":", 5);
+            int id = Integer.parseInt(parts[0]);
+            long issued = Long.parseLong(parts[1]);
+            if (Long.parseLong(parts[2]) <= System.currentTimeMillis() || issued <= revoked.getOrDefault(id, Long.MIN_VALUE)) {
+                return null;
+            }
+            List<Role> roles = parts[3].isEmpty() ? List.of() :
+                    Arrays.stream(parts[3].split(",")).map(Role::valueOf).toList();
+            return new AuthUser(new User(id, null, parts[4], "", true, new Date(issued), roles));
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            log.debug("malformed token: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    //  user updated, disabled or deleted
+    public void revoke(int userId) {
+        afterCommit(() -> {
+            long now = System.currentTimeMillis();
+            revoked.put(userId, now);
+            revoked.values().removeIf(time -> time < now - ttl.toMillis());
+            log.debug("revoke tokens of user {}", userId);
+        });
+    }
+
+    private byte[] sign(byte[] payload) {
+        return macs.get().doFinal(payload);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
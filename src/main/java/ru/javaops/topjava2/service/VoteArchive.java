@@ -0,0 +1,146 @@
+package ru.javaops.topjava2.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.javaops.topjava2.repository.VoteRepository;
+import ru.javaops.topjava2.to.VoteTo;
+import ru.javaops.topjava2.util.VoteUtil;
+
+import java.sql.Date;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static ru.javaops.topjava2.util.DateUtil.DATE_MIN;
+
+/**
+ * Vote store split by date: vote holds the open days (today and days not archived yet),
+ * vote_archive holds the closed days. Today's votes are written to and read from a table of one day.
+ * <p>
+ * Closed days are moved nightly at vote.archive.cron and on startup, each day in one transaction by two bulk statements.
+ * User history is routed by the last archived day: the archive is read up to it, vote after it.
+ * With vote.archive.files.enabled archived days are exported further to {@link VoteFileArchive}
+ * and read from files up to the last exported day.
+ * A history request racing with the move of a day may miss that day.
+ */
+@Service
+@Slf4j
+public class VoteArchive {
+    private static final String ARCHIVE_DAY = "INSERT INTO vote_archive (id, reg_date, reg_time, user_id, restaurant_id) " +
+            "SELECT id, reg_date, reg_time, user_id, restaurant_id FROM vote WHERE reg_date=?";
+    private static final String DELETE_DAY = "DELETE FROM vote WHERE reg_date=?";
+    private static final String OPEN_DAYS = "SELECT DISTINCT reg_date FROM vote WHERE reg_date<? ORDER BY reg_date";
+    private static final String LAST_ARCHIVED = "SELECT MAX(reg_date) FROM vote_archive";
+    private static final String USER_HISTORY = "SELECT a.id, a.reg_date, a.reg_time, r.name, r.location " +
+            "FROM vote_archive a JOIN restaurant r ON r.id=a.restaurant_id " +
+            "WHERE a.user_id=? AND a.reg_date>=? AND a.reg_date<=? ORDER BY a.id";
+
+    private static final RowMapper<VoteTo> VOTE_TO_MAPPER = (rs, i) -> new VoteTo(rs.getInt(1),
+            rs.getDate(2).toLocalDate(), rs.getTime(3).toLocalTime(), rs.getString(4), rs.getString(5));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VoteRepository voteRepository;
+    private final Optional<VoteFileArchive> voteFiles;
+    private final Clock clock;
+
+    private volatile LocalDate archivedThrough;
+
+    public VoteArchive(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                       VoteRepository voteRepository, Optional<VoteFileArchive> voteFiles, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.voteRepository = voteRepository;
+        this.voteFiles = voteFiles;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        LocalDate last = jdbcTemplate.queryForObject(LAST_ARCHIVED, LocalDate.class);
+        LocalDate exported = getExportedThrough();
+        archivedThrough = last == null || last.isBefore(exported) ? exported : last;
+        archiveClosedDays();
+    }
+
+    //  days before today, voting of them is over
+    @Scheduled(cron = "${vote.archive.cron:0 5 0 * * *}")
+    public synchronized void archiveClosedDays() {
+        LocalDate today = LocalDate.now(clock);
+        List<LocalDate> days = jdbcTemplate.queryForList(OPEN_DAYS, LocalDate.class, Date.valueOf(today));
+        for (LocalDate day : days) {
+            int moved = transactionTemplate.execute(status -> {
+                int inserted = jdbcTemplate.update(ARCHIVE_DAY, Date.valueOf(day));
+                jdbcTemplate.update(DELETE_DAY, Date.valueOf(day));
+                return inserted;
+            });
+            archivedThrough = day;
+            log.info("archived {} votes of {}", moved, day);
+        }
+        if (archivedThrough.isBefore(today.minusDays(1))) {
+            archivedThrough = today.minusDays(1);
+        }
+        voteFiles.ifPresent(VoteFileArchive::exportArchivedDays);
+    }
+
+    public List<VoteTo> getUserHistory(int userId, LocalDate startDate, LocalDate endDate) {
+        LocalDate archived = archivedThrough;
+        LocalDate exported = getExportedThrough();
+        List<VoteTo> votes = new ArrayList<>();
+        if (!startDate.isAfter(exported)) {
+            votes.addAll(voteFiles.orElseThrow().getUserHistory(userId, startDate, min(endDate, exported)));
+        }
+        LocalDate from = max(startDate, exported.plusDays(1));
+        LocalDate to = min(endDate, archived);
+        if (!from.isAfter(to)) {
+            votes.addAll(jdbcTemplate.query(USER_HISTORY, VOTE_TO_MAPPER, userId, Date.valueOf(from), Date.valueOf(to)));
+        }
+        if (endDate.isAfter(archived)) {
+            votes.addAll(VoteUtil.getTos(voteRepository.findAllByUserIdFilter(userId, max(startDate, archived.plusDays(1)), endDate)));
+        }
+        return votes;
+    }
+
+    //  ordered by id. Must be consumed in transaction and closed
+    public Stream<VoteTo> streamUserHistory(int userId, LocalDate startDate, LocalDate endDate) {
+        LocalDate archived = archivedThrough;
+        LocalDate exported = getExportedThrough();
+        Stream<VoteTo> votes = Stream.empty();
+        if (!startDate.isAfter(exported)) {
+            votes = voteFiles.orElseThrow().getUserHistory(userId, startDate, min(endDate, exported)).stream();
+        }
+        LocalDate from = max(startDate, exported.plusDays(1));
+        LocalDate to = min(endDate, archived);
+        if (!from.isAfter(to)) {
+            votes = Stream.concat(votes, jdbcTemplate.queryForStream(USER_HISTORY, VOTE_TO_MAPPER,
+                    userId, Date.valueOf(from), Date.valueOf(to)));
+        }
+        if (endDate.isAfter(archived)) {
+            Stream<VoteTo> open = voteRepository.streamAllByUserIdFilter(userId, max(startDate, archived.plusDays(1)), endDate);
+            votes = Stream.concat(votes, open);
+        }
+        return votes;
+    }
+
+    private LocalDate getExportedThrough() {
+        return voteFiles.map(VoteFileArchive::getExportedThrough).orElse(DATE_MIN.minusDays(1));
+    }
+
+    private static LocalDate min(LocalDate d1, LocalDate d2) {
+        return d1.isBefore(d2) ? d1 : d2;
+    }
+
+    private static LocalDate max(LocalDate d1, LocalDate d2) {
+        return d1.isAfter(d2) ? d1 : d2;
+    }
+}
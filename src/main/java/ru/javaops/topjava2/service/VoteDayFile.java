@@ -0,0 +1,217 @@
+package ru.javaops.topjava2.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Votes of one closed day in a columnar file, rows sorted by user id:
+ * <pre>
+ * header      magic, version, epoch day, row count, id base, id width
+ * dictionary  size, restaurant ids
+ * blocks      count, first user id and user column offset of every {@link #BLOCK} rows
+ * user        varint deltas of user ids, the first row of a block is a delta to the block user id
+ * time        second of day, 3 bytes
+ * restaurant  index in the dictionary, 1 byte (2 bytes for more than 256 restaurants)
+ * id          id - id base, id width bytes
+ * </pre>
+ * A row is found by binary search of the blocks and decoding at most one block of user deltas,
+ * other columns are fixed width and read by row index. Files are read-only mapped and never changed,
+ * a file is written to a temp file and moved into place.
+ */
+final class VoteDayFile {
+    static final int MAGIC = 0x564F5445;
+    static final byte VERSION = 1;
+    static final int BLOCK = 128;
+
+    record Row(int id, int userId, int restaurantId, LocalTime regTime) {
+    }
+
+    private final LocalDate date;
+    //  absolute reads only, shared by reader threads
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int idBase;
+    private final int idWidth;
+    private final int[] restaurantIds;
+    private final int restaurantWidth;
+    private final int[] blockUserIds;
+    private final int[] blockOffsets;
+    private final int userPos;
+    private final int timePos;
+    private final int restaurantPos;
+    private final int idPos;
+
+    private VoteDayFile(Path file, ByteBuffer buffer) {
+        this.buffer = buffer;
+        ByteBuffer header = buffer.duplicate();
+        if (header.remaining() < 5 || header.getInt() != MAGIC || header.get() != VERSION) {
+            throw new IllegalStateException("Not a vote day file: " + file);
+        }
+        date = LocalDate.ofEpochDay(header.getInt());
+        count = header.getInt();
+        idBase = header.getInt();
+        idWidth = header.get();
+        restaurantIds = new int[header.getShort() & 0xFFFF];
+        for (int i = 0; i < restaurantIds.length; i++) {
+            restaurantIds[i] = header.getInt();
+        }
+        restaurantWidth = restaurantWidth(restaurantIds.length);
+        int blocks = header.getInt();
+        blockUserIds = new int[blocks];
+        blockOffsets = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            blockUserIds[i] = header.getInt();
+            blockOffsets[i] = header.getInt();
+        }
+        int userBytes = header.getInt();
+        userPos = header.position();
+        timePos = userPos + userBytes;
+        restaurantPos = timePos + 3 * count;
+        idPos = restaurantPos + restaurantWidth * count;
+        if (idPos + idWidth * count != buffer.limit()) {
+            throw new IllegalStateException("Corrupted vote day file: " + file);
+        }
+    }
+
+    static VoteDayFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            return new VoteDayFile(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    static void write(Path file, LocalDate date, List<Row> rows) throws IOException {
+        Row[] sorted = rows.stream().sorted(Comparator.comparingInt(Row::userId)).toArray(Row[]::new);
+        int[] dictionary = rows.stream().mapToInt(Row::restaurantId).distinct().sorted().toArray();
+        int idBase = rows.stream().mapToInt(Row::id).min().orElse(0);
+        int idRange = rows.stream().mapToInt(Row::id).max().orElse(0) - idBase;
+        int idWidth = idRange < 1 << 8 ? 1 : idRange < 1 << 16 ? 2 : idRange < 1 << 24 ? 3 : 4;
+        int restaurantWidth = restaurantWidth(dictionary.length);
+        if (dictionary.length > 0xFFFF) {
+            throw new IllegalArgumentException("Too many restaurants in " + date + ": " + dictionary.length);
+        }
+
+        int blocks = (sorted.length + BLOCK - 1) / BLOCK;
+        int[] blockOffsets = new int[blocks];
+        ByteArrayOutputStream users = new ByteArrayOutputStream(sorted.length * 2);
+        for (int i = 0; i < sorted.length; i++) {
+            if (i % BLOCK == 0) {
+                blockOffsets[i / BLOCK] = users.size();
+                writeVarint(users, 0);
+            } else {
+                writeVarint(users, sorted[i].userId() - sorted[i - 1].userId());
+            }
+        }
+
+        int size = 4 + 1 + 4 + 4 + 4 + 1 + 2 + 4 * dictionary.length + 4 + 8 * blocks + 4 + users.size()
+                + (3 + restaurantWidth + idWidth) * sorted.length;
+        ByteBuffer buffer = ByteBuffer.allocate(size)
+                .putInt(MAGIC).put(VERSION).putInt((int) date.toEpochDay()).putInt(sorted.length)
+                .putInt(idBase).put((byte) idWidth).putShort((short) dictionary.length);
+        for (int restaurantId : dictionary) {
+            buffer.putInt(restaurantId);
+        }
+        buffer.putInt(blocks);
+        for (int i = 0; i < blocks; i++) {
+            buffer.putInt(sorted[i * BLOCK].userId()).putInt(blockOffsets[i]);
+        }
+        buffer.putInt(users.size()).put(users.toByteArray());
+        for (Row row : sorted) {
+            putFixed(buffer, row.regTime().toSecondOfDay(), 3);
+        }
+        for (Row row : sorted) {
+            putFixed(buffer, Arrays.binarySearch(dictionary, row.restaurantId()), restaurantWidth);
+        }
+        for (Row row : sorted) {
+            putFixed(buffer, row.id() - idBase, idWidth);
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            channel.write(buffer.flip());
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    LocalDate getDate() {
+        return date;
+    }
+
+    int size() {
+        return count;
+    }
+
+    //  vote of the user or null
+    Row find(int userId) {
+        int block = Arrays.binarySearch(blockUserIds, userId);
+        if (block < 0) {
+            block = -block - 2;
+            if (block < 0) {
+                return null;
+            }
+        }
+        int pos = userPos + blockOffsets[block];
+        int user = blockUserIds[block];
+        for (int row = block * BLOCK, end = Math.min(count, row + BLOCK); row < end; row++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(pos++);
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            user += delta;
+            if (user == userId) {
+                return row(row, userId);
+            } else if (user > userId) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private Row row(int row, int userId) {
+        return new Row(idBase + getFixed(idPos + idWidth * row, idWidth), userId,
+                restaurantIds[getFixed(restaurantPos + restaurantWidth * row, restaurantWidth)],
+                LocalTime.ofSecondOfDay(getFixed(timePos + 3 * row, 3)));
+    }
+
+    private int getFixed(int pos, int width) {
+        int value = 0;
+        for (int i = 0; i < width; i++) {
+            value = value << 8 | buffer.get(pos + i) & 0xFF;
+        }
+        return value;
+    }
+
+    private static void putFixed(ByteBuffer buffer, int value, int width) {
+        for (int i = width - 1; i >= 0; i--) {
+            buffer.put((byte) (value >>> 8 * i));
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write(value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int restaurantWidth(int dictionarySize) {
+        return dictionarySize <= 1 << 8 ? 1 : 2;
+    }
+}
@@ -0,0 +1,137 @@
+package ru.javaops.topjava2.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.javaops.topjava2.to.VoteTo;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+import static ru.javaops.topjava2.util.DateUtil.DATE_MIN;
+
+/**
+ * Closed days of vote_archive exported to per day {@link VoteDayFile} files in vote.archive.files.dir
+ * and deleted from the DB. Votes of a day take some bytes in the file instead of a row with its indexes.
+ * <p>
+ * Each day is exported after vote_archive is filled, its rows are deleted in the transaction that read them,
+ * after the file is in place. Daily summaries are built from vote rows, so only summarized days are exported.
+ * All files of the directory are mapped on startup, user history of a day costs one block decoding
+ * and restaurant names are read by one query for the whole range.
+ */
+@Service
+@ConditionalOnProperty(name = "vote.archive.files.enabled", havingValue = "true")
+@Slf4j
+public class VoteFileArchive {
+    private static final String ARCHIVED_DAYS = "SELECT DISTINCT reg_date FROM vote_archive WHERE reg_date<=? ORDER BY reg_date";
+    private static final String DAY_VOTES = "SELECT id, user_id, restaurant_id, reg_time FROM vote_archive WHERE reg_date=?";
+    private static final String DELETE_DAY = "DELETE FROM vote_archive WHERE reg_date=?";
+    private static final String RESTAURANTS = "SELECT id, name, location FROM restaurant WHERE id IN (%s)";
+    private static final String FILE_PREFIX = "votes-";
+    private static final String FILE_SUFFIX = ".bin";
+
+    private static final RowMapper<VoteDayFile.Row> ROW_MAPPER = (rs, i) -> new VoteDayFile.Row(rs.getInt(1),
+            rs.getInt(2), rs.getInt(3), rs.getTime(4).toLocalTime());
+
+    private final Path dir;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VoteHistory voteHistory;
+
+    private final ConcurrentNavigableMap<LocalDate, VoteDayFile> days = new ConcurrentSkipListMap<>();
+
+    public VoteFileArchive(@Value("${vote.archive.files.dir}") Path dir, JdbcTemplate jdbcTemplate,
+                           PlatformTransactionManager transactionManager, VoteHistory voteHistory) {
+        this.dir = dir;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.voteHistory = voteHistory;
+    }
+
+    @PostConstruct
+    void load() throws IOException {
+        Files.createDirectories(dir);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                VoteDayFile dayFile = VoteDayFile.open(file);
+                days.put(dayFile.getDate(), dayFile);
+            }
+        }
+        log.info("mapped {} vote day files of {}", days.size(), dir.toAbsolutePath());
+    }
+
+    //  the last day read from files, vote_archive holds the days after it
+    public LocalDate getExportedThrough() {
+        return days.isEmpty() ? DATE_MIN.minusDays(1) : days.lastKey();
+    }
+
+    public synchronized void exportArchivedDays() {
+        LocalDate summarized = voteHistory.getSummarizedThrough();
+        for (LocalDate day : jdbcTemplate.queryForList(ARCHIVED_DAYS, LocalDate.class, Date.valueOf(summarized))) {
+            Path file = dir.resolve(FILE_PREFIX + day + FILE_SUFFIX);
+            VoteDayFile dayFile = transactionTemplate.execute(status -> {
+                try {
+                    VoteDayFile.write(file, day, jdbcTemplate.query(DAY_VOTES, ROW_MAPPER, Date.valueOf(day)));
+                    jdbcTemplate.update(DELETE_DAY, Date.valueOf(day));
+                    return VoteDayFile.open(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Export of votes of " + day + " failed", e);
+                }
+            });
+            days.put(day, dayFile);
+            log.info("exported {} votes of {} to {}", dayFile.size(), day, file);
+        }
+    }
+
+    //  ordered by date
+    public List<VoteTo> getUserHistory(int userId, LocalDate startDate, LocalDate endDate) {
+        if (startDate.isAfter(endDate)) {
+            return List.of();
+        }
+        List<Map.Entry<LocalDate, VoteDayFile.Row>> votes = new ArrayList<>();
+        days.subMap(startDate, true, endDate, true).forEach((day, dayFile) -> {
+            VoteDayFile.Row row = dayFile.find(userId);
+            if (row != null) {
+                votes.add(Map.entry(day, row));
+            }
+        });
+        if (votes.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, String[]> restaurants = getRestaurants(votes.stream()
+                .map(v -> v.getValue().restaurantId()).collect(Collectors.toSet()));
+        //  votes for deleted restaurants are skipped, like vote_archive rows deleted with them
+        return votes.stream()
+                .filter(v -> restaurants.containsKey(v.getValue().restaurantId()))
+                .map(v -> {
+                    VoteDayFile.Row row = v.getValue();
+                    String[] restaurant = restaurants.get(row.restaurantId());
+                    return new VoteTo(row.id(), v.getKey(), row.regTime(), restaurant[0], restaurant[1]);
+                })
+                .toList();
+    }
+
+    private Map<Integer, String[]> getRestaurants(Set<Integer> ids) {
+        Map<Integer, String[]> restaurants = new HashMap<>();
+        jdbcTemplate.query(String.format(RESTAURANTS, String.join(",", Collections.nCopies(ids.size(), "?"))),
+                rs -> {
+                    restaurants.put(rs.getInt(1), new String[]{rs.getString(2), rs.getString(3)});
+                }, ids.toArray());
+        return restaurants;
+    }
+}
@@ -0,0 +1,93 @@
+package ru.javaops.topjava2.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.javaops.topjava2.repository.VoteSummaryRepository;
+import ru.javaops.topjava2.to.RestaurantTo;
+import ru.javaops.topjava2.to.RestaurantVoteCount;
+import ru.javaops.topjava2.util.RestaurantUtil;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static ru.javaops.topjava2.util.DateUtil.DATE_MIN;
+
+/**
+ * Voting history: closed days are read from the pre-aggregated vote_daily_summary,
+ * the current day (until it is summarized) from the live {@link VoteTally}.
+ * <p>
+ * Each day is summarized once: days before today on startup, the current day only by {@link VotingDay}
+ * after voting is over and the votes accepted before the cutoff are written.
+ */
+@Service
+@Slf4j
+public class VoteHistory {
+
+    private final VoteSummaryRepository summaryRepository;
+    private final VoteTally voteTally;
+    private final Clock clock;
+
+    private volatile LocalDate summarizedThrough;
+
+    public VoteHistory(VoteSummaryRepository summaryRepository, VoteTally voteTally, Clock clock) {
+        this.summaryRepository = summaryRepository;
+        this.voteTally = voteTally;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        getSummarizedThrough();
+    }
+
+    public List<RestaurantTo> getResultHistory(LocalDate startDate, LocalDate endDate) {
+        LocalDate closed = getSummarizedThrough();
+        List<RestaurantVoteCount> counts = new ArrayList<>(
+                summaryRepository.getResultHistory(startDate, endDate.isAfter(closed) ? closed : endDate));
+        counts.addAll(getOpenDayCounts(startDate, endDate, closed));
+        return RestaurantUtil.getHistoryTos(counts, LocalDate.now(clock));
+    }
+
+    //  ordered by date, restaurant id. Must be consumed in transaction and closed
+    public Stream<RestaurantVoteCount> streamResultHistory(LocalDate startDate, LocalDate endDate) {
+        LocalDate closed = getSummarizedThrough();
+        return Stream.concat(
+                summaryRepository.streamResultHistory(startDate, endDate.isAfter(closed) ? closed : endDate),
+                getOpenDayCounts(startDate, endDate, closed).stream());
+    }
+
+    private List<RestaurantVoteCount> getOpenDayCounts(LocalDate startDate, LocalDate endDate, LocalDate closed) {
+        LocalDate today = LocalDate.now(clock);
+        return closed.isBefore(today) && !today.isBefore(startDate) && !today.isAfter(endDate) ?
+                voteTally.getCounts() : List.of();
+    }
+
+    //  the last summarized day, days before today are summarized on the first call
+    public LocalDate getSummarizedThrough() {
+        LocalDate through = summarizedThrough;
+        return through != null ? through : summarizeThrough(LocalDate.now(clock).minusDays(1));
+    }
+
+    //  votes of the days through the date are all written, returns the last summarized day
+    public synchronized LocalDate summarizeThrough(LocalDate date) {
+        if (summarizedThrough == null || summarizedThrough.isBefore(date)) {
+            LocalDate from = summarizedThrough != null ? summarizedThrough.plusDays(1) : nextAfterLastSummarized();
+            if (!from.isAfter(date)) {
+                log.info("summarize votes from {} to {}", from, date);
+                summaryRepository.summarize(from, date);
+            }
+            summarizedThrough = from.isAfter(date) ? from.minusDays(1) : date;
+        }
+        return summarizedThrough;
+    }
+
+    private LocalDate nextAfterLastSummarized() {
+        LocalDate last = summaryRepository.getLastDate();
+        return last == null ? DATE_MIN : last.plusDays(1);
+    }
+}
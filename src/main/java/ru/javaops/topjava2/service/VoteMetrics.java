@@ -0,0 +1,62 @@
+package ru.javaops.topjava2.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import ru.javaops.topjava2.error.IllegalRequestDataException;
+import ru.javaops.topjava2.error.LateTimeException;
+
+/**
+ * votes.accepted{operation=create|update} - votes saved (in write-behind mode - flushed),
+ * votes.rejected{reason=late|duplicate|restaurant|queue_full|flush_timeout|stopped|other},
+ * the last three are write-behind {@link VoteWriter} rejections with 503.
+ */
+@Service
+public class VoteMetrics {
+    private static final String ACCEPTED = "votes.accepted";
+    private static final String REJECTED = "votes.rejected";
+
+    public static final String QUEUE_FULL = "queue_full";
+    public static final String FLUSH_TIMEOUT = "flush_timeout";
+    public static final String STOPPED = "stopped";
+
+    private final Counter created;
+    private final Counter updated;
+    private final MeterRegistry registry;
+
+    public VoteMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.created = registry.counter(ACCEPTED, "operation", "create");
+        this.updated = registry.counter(ACCEPTED, "operation", "update");
+    }
+
+    public void created() {
+        created.increment();
+    }
+
+    public void updated() {
+        updated.increment();
+    }
+
+    public void rejected(RuntimeException e) {
+        rejected(reason(e));
+    }
+
+    public void rejected(String reason) {
+        registry.counter(REJECTED, "reason", reason).increment();
+    }
+
+    private static String reason(RuntimeException e) {
+        if (e instanceof LateTimeException) {
+            return "late";
+        } else if (e instanceof DataIntegrityViolationException) {
+            //  vote_unique_reg_date_user_id_idx, see GlobalExceptionHandler.EXCEPTION_DUPLICATE_VOTE
+            return "duplicate";
+        } else if (e instanceof IllegalRequestDataException) {
+            //  restaurant not found or without today menu
+            return "restaurant";
+        }
+        return "other";
+    }
+}
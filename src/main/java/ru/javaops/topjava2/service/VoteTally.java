@@ -0,0 +1,170 @@
+package ru.javaops.topjava2.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.javaops.topjava2.model.Restaurant;
+import ru.javaops.topjava2.repository.RestaurantRepository;
+import ru.javaops.topjava2.repository.VoteRepository;
+import ru.javaops.topjava2.to.RestaurantTo;
+import ru.javaops.topjava2.to.RestaurantVoteCount;
+import ru.javaops.topjava2.util.JsonBytes;
+import ru.javaops.topjava2.util.RestaurantUtil;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static ru.javaops.topjava2.util.TransactionUtil.afterCommit;
+
+/**
+ * Live per-restaurant vote counters for the current day.
+ * <p>
+ * Counters of all restaurants are loaded from the DB at startup and on the first access after day rollover,
+ * then maintained incrementally after each committed vote create/update without DB access.
+ * Restaurant of every user vote for the day is kept to move the vote between counters on change.
+ * A vote for a restaurant created after the load resets the tally, it is reloaded on next access.
+ */
+@Service
+@Slf4j
+public class VoteTally {
+
+    private final VoteRepository voteRepository;
+    private final RestaurantRepository restaurantRepository;
+    private final Clock clock;
+
+    private volatile Day day;
+    //  incremented after each change of counters
+    private final AtomicLong version = new AtomicLong();
+    private volatile VersionedJson resultJson;
+
+    public VoteTally(VoteRepository voteRepository, RestaurantRepository restaurantRepository, Clock clock) {
+        this.voteRepository = voteRepository;
+        this.restaurantRepository = restaurantRepository;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        current();
+    }
+
+    public List<RestaurantTo> getResult() {
+        return getCounts().stream()
+                .map(c -> RestaurantUtil.createTo(c, c.getVotes().intValue(), Map.of(c.getRegDate(), c.getVotes())))
+                .toList();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    //  serialized once per change of counters
+    public JsonBytes getResultJson() {
+        current();
+        long v = version.get();
+        VersionedJson json = resultJson;
+        if (json == null || json.version != v) {
+            json = new VersionedJson(v, JsonBytes.of(getResult()));
+            resultJson = json;
+        }
+        return json.json;
+    }
+
+    public List<RestaurantVoteCount> getCounts() {
+        Day d = current();
+        return d.counters.values().stream()
+                .sorted(Comparator.comparingInt(Counter::id))
+                .map(c -> new RestaurantVoteCount(c.id(), c.name(), c.location(), d.date, c.votes().sum()))
+                .filter(c -> c.getVotes() > 0)
+                .toList();
+    }
+
+    //  vote of the user created or changed
+    public void voted(LocalDate regDate, int userId, int restaurantId) {
+        afterCommit(() -> {
+            Day d = current();
+            if (d.date.equals(regDate)) {
+                Counter counter = d.counters.get(restaurantId);
+                if (counter == null) {
+                    log.debug("restaurant {} is not in vote tally, reload it", restaurantId);
+                    invalidate();
+                    return;
+                }
+                Integer oldRestaurantId = d.userVotes.put(userId, restaurantId);
+                if (oldRestaurantId != null && oldRestaurantId == restaurantId) {
+                    return;
+                }
+                if (oldRestaurantId != null) {
+                    d.counters.get(oldRestaurantId).votes().decrement();
+                }
+                counter.votes().increment();
+                version.incrementAndGet();
+            }
+        });
+    }
+
+    //  restaurant renamed or deleted (with its votes): reload on next access
+    public void reset() {
+        afterCommit(this::invalidate);
+    }
+
+    private void invalidate() {
+        day = null;
+        version.incrementAndGet();
+    }
+
+    private Day current() {
+        LocalDate today = LocalDate.now(clock);
+        Day d = day;
+        if (d == null || !d.date.equals(today)) {
+            synchronized (this) {
+                d = day;
+                if (d == null || !d.date.equals(today)) {
+                    d = load(today);
+                    day = d;
+                    version.incrementAndGet();
+                }
+            }
+        }
+        return d;
+    }
+
+    private Day load(LocalDate date) {
+        log.info("load vote tally for {}", date);
+        Day d = new Day(date);
+        for (Restaurant r : restaurantRepository.findAll()) {
+            d.counters.put(r.id(), new Counter(r.id(), r.getName(), r.getLocation(), new LongAdder()));
+        }
+        for (Object[] userVote : voteRepository.getUserVotes(date)) {
+            Integer restaurantId = (Integer) userVote[1];
+            d.userVotes.put((Integer) userVote[0], restaurantId);
+            d.counters.get(restaurantId).votes().increment();
+        }
+        return d;
+    }
+
+    private record VersionedJson(long version, JsonBytes json) {
+    }
+
+    private record Counter(int id, String name, String location, LongAdder votes) {
+    }
+
+    private static class Day {
+        private final LocalDate date;
+        private final ConcurrentMap<Integer, Counter> counters = new ConcurrentHashMap<>();
+        //  userId -> restaurantId
+        private final ConcurrentMap<Integer, Integer> userVotes = new ConcurrentHashMap<>();
+
+        private Day(LocalDate date) {
+            this.date = date;
+        }
+    }
+}
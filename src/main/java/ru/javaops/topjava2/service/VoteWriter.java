@@ -0,0 +1,239 @@
+package ru.javaops.topjava2.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.error.ErrorAttributeOptions;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.javaops.topjava2.error.AppException;
+import ru.javaops.topjava2.model.Vote;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.springframework.boot.web.error.ErrorAttributeOptions.Include.MESSAGE;
+
+/**
+ * Write-behind vote ingestion (vote.ingestion.mode=write-behind).
+ * <p>
+ * Validated votes are queued and inserted by a single background writer in JDBC batches of
+ * hibernate.jdbc.batch_size. With vote.ingestion.ack=flushed the caller waits until its batch is committed,
+ * with ack=queued it returns as soon as the vote is queued (votes still queued are lost on crash,
+ * duplicates are dropped by vote_unique_reg_date_user_id_idx and only logged).
+ * A flushed caller waits at most vote.ingestion.flush-timeout, then gets 503 (the vote may still be written).
+ * Votes left in the queue after the writer exits are failed with 503.
+ * Queue is drained on shutdown and awaited by {@link VotingDay} when voting closes.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "vote.ingestion.mode", havingValue = "write-behind")
+public class VoteWriter {
+    private static final String INSERT_VOTE = "INSERT INTO vote (reg_date, reg_time, user_id, restaurant_id) VALUES (?,?,?,?)";
+
+    public enum Ack {QUEUED, FLUSHED}
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:20}")
+    private int batchSize;
+
+    @Value("${vote.ingestion.ack:flushed}")
+    private Ack ack;
+
+    @Value("${vote.ingestion.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${vote.ingestion.flush-timeout:5s}")
+    private Duration flushTimeout;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VoteTally voteTally;
+    private final VoteMetrics voteMetrics;
+    private final MeterRegistry registry;
+
+    private BlockingQueue<PendingVote> queue;
+    private Thread writer;
+    private volatile boolean running;
+    //  votes queued and votes written or rejected by the writer
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+
+    public VoteWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, VoteTally voteTally,
+                      VoteMetrics voteMetrics, MeterRegistry registry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.voteTally = voteTally;
+        this.voteMetrics = voteMetrics;
+        this.registry = registry;
+    }
+
+    @PostConstruct
+    void start() {
+        log.info("Start vote writer: batch size {}, ack {}", batchSize, ack);
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        Gauge.builder("votes.queue.size", queue, BlockingQueue::size).register(registry);
+        running = true;
+        writer = new Thread(this::run, "vote-writer");
+        writer.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        log.info("Stop vote writer, drain {} queued votes", queue.size());
+        running = false;
+        writer.join();
+        failQueued();
+    }
+
+    public void submit(Vote vote) {
+        PendingVote pending = new PendingVote(vote, new CompletableFuture<>());
+        if (!running) {
+            throw rejected("Vote writer is stopped, try again later", VoteMetrics.STOPPED);
+        }
+        if (!queue.offer(pending)) {
+            throw rejected("Vote queue is full, try again later", VoteMetrics.QUEUE_FULL);
+        }
+        //  writer stopped and queue drained after the offer: nobody else will take the vote
+        if (!running && queue.remove(pending)) {
+            throw rejected("Vote writer is stopped, try again later", VoteMetrics.STOPPED);
+        }
+        queued.incrementAndGet();
+        if (ack == Ack.FLUSHED) {
+            try {
+                pending.done().get(flushTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+            } catch (TimeoutException e) {
+                throw rejected("Vote is not written in " + flushTimeout.toMillis() + " ms, check it later", VoteMetrics.FLUSH_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for vote flush", e);
+            }
+        }
+    }
+
+    private AppException rejected(String message, String reason) {
+        voteMetrics.rejected(reason);
+        return new AppException(HttpStatus.SERVICE_UNAVAILABLE, message, ErrorAttributeOptions.of(MESSAGE));
+    }
+
+    //  votes queued before the call are written or rejected on return
+    public void awaitWritten(Duration timeout) {
+        long target = queued.get();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (processed.get() < target && running) {
+            if (System.nanoTime() > deadline) {
+                log.warn("{} queued votes not written in {}", target - processed.get(), timeout);
+                return;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            write();
+        } finally {
+            failQueued();
+        }
+    }
+
+    private void write() {
+        List<PendingVote> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingVote first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                log.warn("Vote writer interrupted, {} votes left in queue", queue.size());
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Throwable e) {
+                log.error("Vote writer failure", e);
+                batch.forEach(p -> p.done().completeExceptionally(e));
+            } finally {
+                processed.addAndGet(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    //  writer exited: votes still queued are never written
+    private void failQueued() {
+        List<PendingVote> left = new ArrayList<>();
+        queue.drainTo(left);
+        if (!left.isEmpty()) {
+            log.warn("Vote writer exited, {} queued votes failed", left.size());
+            AppException e = new AppException(HttpStatus.SERVICE_UNAVAILABLE, "Vote writer is stopped, try again later",
+                    ErrorAttributeOptions.of(MESSAGE));
+            left.forEach(p -> {
+                voteMetrics.rejected(VoteMetrics.STOPPED);
+                p.done().completeExceptionally(e);
+            });
+            processed.addAndGet(left.size());
+        }
+    }
+
+    private void flush(List<PendingVote> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_VOTE, batch, batch.size(), (ps, p) -> bind(ps, p.vote())));
+            batch.forEach(this::written);
+        } catch (DataAccessException e) {
+            //  isolate the failed votes (e.g. duplicates) row by row
+            log.debug("Batch of {} votes failed, retry one by one: {}", batch.size(), e.getMessage());
+            for (PendingVote p : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(INSERT_VOTE, ps -> bind(ps, p.vote())));
+                    written(p);
+                } catch (DataAccessException ex) {
+                    log.warn("Vote of user {} rejected: {}", p.vote().getUserId(), ex.getMessage());
+                    voteMetrics.rejected(ex);
+                    p.done().completeExceptionally(ex);
+                }
+            }
+        }
+    }
+
+    private void written(PendingVote p) {
+        voteTally.voted(p.vote().getRegDate(), p.vote().getUserId(), p.vote().getRestaurant().getId());
+        voteMetrics.created();
+        p.done().complete(null);
+    }
+
+    private static void bind(PreparedStatement ps, Vote vote) throws SQLException {
+        ps.setDate(1, Date.valueOf(vote.getRegDate()));
+        ps.setTime(2, Time.valueOf(vote.getRegTime()));
+        ps.setInt(3, vote.getUserId());
+        //  restaurant is a lazy reference: getId() doesn't initialize it
+        ps.setInt(4, vote.getRestaurant().getId());
+    }
+
+    private record PendingVote(Vote vote, CompletableFuture<Void> done) {
+    }
+}
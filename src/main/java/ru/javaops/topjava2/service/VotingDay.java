@@ -0,0 +1,198 @@
+package ru.javaops.topjava2.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronTrigger;
+import org.springframework.stereotype.Service;
+import ru.javaops.topjava2.error.LateTimeException;
+import ru.javaops.topjava2.util.JsonBytes;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Voting state of the current day: open until limit-time.vote, closed after it.
+ * <p>
+ * The day is closed once, at limit-time.vote or on startup after it. The closed flag is published first,
+ * so votes are rejected from then on by one volatile read. Then, on the scheduler thread, votes already accepted
+ * are awaited (in flight and queued by write-behind {@link VoteWriter}), the day is summarized to vote_daily_summary
+ * (nothing else summarizes the current day), today's result is frozen and tomorrow's {@link MenuSnapshot} is loaded ahead.
+ * At midnight the next day is opened: menu snapshot, tally and today menus are switched to it
+ * and cached today votes of users are evicted.
+ * A request that comes first after the cutoff or midnight, before the scheduler, rolls the day itself.
+ */
+@Service
+@Slf4j
+public class VotingDay {
+    private static final Duration AWAIT_VOTES = Duration.ofSeconds(5);
+
+    @Value("${limit-time.vote}")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.TIME)
+    private LocalTime timeLimit;
+
+    private final VoteTally voteTally;
+    private final VoteHistory voteHistory;
+    private final MenuSnapshot menuSnapshot;
+    private final RestaurantDirectory restaurantDirectory;
+    private final Optional<VoteWriter> voteWriter;
+    private final CacheManager cacheManager;
+    private final TaskScheduler taskScheduler;
+    private final Clock clock;
+
+    //  votes passed the open check and not finished yet
+    private final LongAdder inFlight = new LongAdder();
+    private volatile Day day;
+
+    public VotingDay(VoteTally voteTally, VoteHistory voteHistory, MenuSnapshot menuSnapshot,
+                     RestaurantDirectory restaurantDirectory, Optional<VoteWriter> voteWriter,
+                     CacheManager cacheManager, TaskScheduler taskScheduler, Clock clock) {
+        this.voteTally = voteTally;
+        this.voteHistory = voteHistory;
+        this.menuSnapshot = menuSnapshot;
+        this.restaurantDirectory = restaurantDirectory;
+        this.voteWriter = voteWriter;
+        this.cacheManager = cacheManager;
+        this.taskScheduler = taskScheduler;
+        this.clock = clock;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        current();
+        taskScheduler.schedule(this::closeDay,
+                new CronTrigger(timeLimit.getSecond() + " " + timeLimit.getMinute() + " " + timeLimit.getHour() + " * * *"));
+    }
+
+    //  fired at limit-time.vote: voting is over after it, not at it, retry if the trigger is exactly on time
+    private void closeDay() {
+        if (!roll().closed) {
+            taskScheduler.schedule(this::roll, Instant.now().plusSeconds(1));
+        }
+    }
+
+    @Scheduled(cron = "0 0 0 * * *")
+    public void startDay() {
+        roll();
+    }
+
+    //  the action is a vote create/change, closing of the day waits for it
+    public <T> T voting(Supplier<T> action) {
+        inFlight.increment();
+        try {
+            return action.get();
+        } finally {
+            inFlight.decrement();
+        }
+    }
+
+    public void voting(Runnable action) {
+        voting(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public void checkOpen() {
+        if (current().closed) {
+            throw new LateTimeException("Voting end at " + timeLimit + " o'clock");
+        }
+    }
+
+    //  frozen after the day is closed
+    public JsonBytes getResultJson() {
+        JsonBytes result = current().result;
+        return result != null ? result : voteTally.getResultJson();
+    }
+
+    private Day current() {
+        Day d = day;
+        if (d == null || !d.date.equals(LocalDate.now(clock)) || !d.closed && LocalTime.now(clock).isAfter(timeLimit)) {
+            d = roll();
+        }
+        return d;
+    }
+
+    //  only flips the state: the thread may be a vote in flight, closing work is done by the scheduler
+    private synchronized Day roll() {
+        LocalDate today = LocalDate.now(clock);
+        Day d = day;
+        if (d == null || !d.date.equals(today)) {
+            if (d != null && !d.closed) {
+                //  no access from the cutoff to midnight: the previous day is closed now
+                LocalDate date = d.date;
+                taskScheduler.schedule(() -> close(date), Instant.now());
+            }
+            d = open(today, d == null);
+        }
+        if (!d.closed && LocalTime.now(clock).isAfter(timeLimit)) {
+            d = new Day(d.date, true, null);
+            day = d;
+            log.info("voting of {} closed", d.date);
+            LocalDate date = d.date;
+            taskScheduler.schedule(() -> close(date), Instant.now());
+        }
+        return d;
+    }
+
+    private Day open(LocalDate date, boolean startup) {
+        Day d = new Day(date, false, null);
+        day = d;
+        if (!startup) {
+            log.info("voting of {} opened", date);
+            menuSnapshot.init();
+            voteTally.init();
+            restaurantDirectory.init();
+            Cache userVote = cacheManager.getCache("userVote");
+            if (userVote != null) {
+                userVote.clear();
+            }
+        }
+        return d;
+    }
+
+    private void close(LocalDate date) {
+        awaitInFlight();
+        voteWriter.ifPresent(w -> w.awaitWritten(AWAIT_VOTES));
+        voteHistory.summarizeThrough(date);
+        JsonBytes result = voteTally.getResultJson();
+        synchronized (this) {
+            if (day.date.equals(date)) {
+                day = new Day(date, true, result);
+            }
+        }
+        menuSnapshot.prepare(date.plusDays(1));
+        log.info("result of {} frozen", date);
+    }
+
+    private void awaitInFlight() {
+        long deadline = System.nanoTime() + AWAIT_VOTES.toNanos();
+        while (inFlight.sum() > 0) {
+            if (System.nanoTime() > deadline) {
+                log.warn("{} votes still in flight after {}", inFlight.sum(), AWAIT_VOTES);
+                return;
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private record Day(LocalDate date, boolean closed, JsonBytes result) {
+    }
+}
@@ -0,0 +1,31 @@
+package ru.javaops.topjava2.to;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Value;
+
+import java.time.LocalDate;
+
+@Value
+public class MenuImportResult {
+
+    @Schema(description = "Position of the record in request")
+    int index;
+
+    Integer restaurantId;
+
+    LocalDate forDate;
+
+    @Schema(description = "Id of created menu, null if rejected")
+    Integer menuId;
+
+    @Schema(description = "Reason of rejection, null if created")
+    String error;
+
+    public MenuImportResult(int index, Integer restaurantId, LocalDate forDate, Integer menuId, String error) {
+        this.index = index;
+        this.restaurantId = restaurantId;
+        this.forDate = forDate;
+        this.menuId = menuId;
+        this.error = error;
+    }
+}
@@ -0,0 +1,33 @@
+package ru.javaops.topjava2.to;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.lang.Nullable;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDate;
+import java.util.List;
+
+@Value
+public class MenuImportTo {
+
+    @NotNull
+    @Schema(example = "3")
+    Integer restaurantId;
+
+    @Nullable
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    @Schema(description = "For this date, today if empty", example = "2022-02-21", format = "yyyy-MM-dd")
+    LocalDate forDate;
+
+    @NotNull
+    @Schema(example = "[7, 8, 9]")
+    List<Integer> dishes;
+
+    public MenuImportTo(Integer restaurantId, @Nullable LocalDate forDate, List<Integer> dishes) {
+        this.restaurantId = restaurantId;
+        this.forDate = forDate;
+        this.dishes = dishes;
+    }
+}
@@ -0,0 +1,24 @@
+package ru.javaops.topjava2.to;
+
+import lombok.Value;
+
+import java.time.LocalDate;
+
+//  https://www.baeldung.com/jpa-queries-custom-result-with-aggregation-functions
+@Value
+public class RestaurantVoteCount {
+
+    Integer restaurantId;
+    String name;
+    String location;
+    LocalDate regDate;
+    Long votes;
+
+    public RestaurantVoteCount(Integer restaurantId, String name, String location, LocalDate regDate, Long votes) {
+        this.restaurantId = restaurantId;
+        this.name = name;
+        this.location = location;
+        this.regDate = regDate;
+        this.votes = votes;
+    }
+}
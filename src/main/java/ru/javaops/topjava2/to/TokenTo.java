@@ -0,0 +1,11 @@
+package ru.javaops.topjava2.to;
+
+import lombok.Value;
+
+@Value
+public class TokenTo {
+    String token;
+
+    //  seconds
+    long expiresIn;
+}
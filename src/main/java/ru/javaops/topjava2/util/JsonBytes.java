@@ -0,0 +1,26 @@
+package ru.javaops.topjava2.util;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Already serialized JSON response body with its strong ETag.
+ * <p>
+ * Returned as {@code ResponseEntity<byte[]>} the bytes are written to the response as is,
+ * and a GET with matching If-None-Match gets 304 without body (see HttpEntityMethodProcessor).
+ */
+public record JsonBytes(byte[] body, String etag) {
+
+    public static JsonBytes of(Object value) {
+        byte[] body = JsonUtil.writeBytes(value);
+        return new JsonBytes(body, '"' + DigestUtils.md5DigestAsHex(body) + '"');
+    }
+
+    public ResponseEntity<byte[]> toResponse() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .body(body);
+    }
+}
@@ -1,14 +1,20 @@
 package ru.javaops.topjava2.util;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.experimental.UtilityClass;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 @UtilityClass
 public class JsonUtil {
@@ -43,6 +49,25 @@ public class JsonUtil {
         }
     }
 
+    public static <T> byte[] writeBytes(T obj) {
+        try {
+            return mapper.writeValueAsBytes(obj);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid write to JSON:\n'" + obj + "'", e);
+        }
+    }
+
+    //  NDJSON (one value per line), written while the stream is consumed: memory doesn't depend on the stream size
+    public static <T> void writeValues(OutputStream out, Stream<T> values) throws IOException {
+        ObjectWriter writer = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        JsonGenerator generator = mapper.createGenerator(out);
+        for (Iterator<T> it = values.iterator(); it.hasNext(); ) {
+            writer.writeValue(generator, it.next());
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+    }
+
     public static <T> String writeAdditionProps(T obj, String addName, Object addValue) {
         return writeAdditionProps(obj, Map.of(addName, addValue));
     }
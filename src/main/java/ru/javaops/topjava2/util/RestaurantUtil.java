@@ -2,39 +2,37 @@ package ru.javaops.topjava2.util;
 
 import lombok.experimental.UtilityClass;
 import ru.javaops.topjava2.model.Restaurant;
-import ru.javaops.topjava2.model.Vote;
 import ru.javaops.topjava2.to.RestaurantTo;
+import ru.javaops.topjava2.to.RestaurantVoteCount;
 
 import java.time.LocalDate;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @UtilityClass
 public class RestaurantUtil {
-    public static List<RestaurantTo> getTos(Collection<Vote> votes) {
-        Map<Restaurant, Long> map = votes.stream()
-                .collect(Collectors.groupingBy(Vote::getRestaurant, Collectors.counting()));
+    //  counts are already grouped by restaurant and date
+    public static List<RestaurantTo> getHistoryTos(Collection<RestaurantVoteCount> counts, LocalDate today) {
+        Map<Integer, List<RestaurantVoteCount>> history = counts.stream()
+                .collect(Collectors.groupingBy(RestaurantVoteCount::getRestaurantId, TreeMap::new, Collectors.toList()));
 
-        return map.entrySet().stream()
-                .map(e -> createTo(e.getKey(), e.getValue().intValue(), Map.of(LocalDate.now(), e.getValue())))
+        return history.values().stream()
+                .map(rows -> {
+                    Map<LocalDate, Long> votesHistory = rows.stream()
+                            .collect(Collectors.toMap(RestaurantVoteCount::getRegDate, RestaurantVoteCount::getVotes));
+                    return createTo(rows.get(0), votesHistory.getOrDefault(today, 0L).intValue(), votesHistory);
+                })
                 .toList();
     }
-    //https://habr.com/ru/post/348536/
-    public static List<RestaurantTo> getHistoryTos(Collection<Vote> votes) {
-        Map<Restaurant, Map<LocalDate, Long>> history = votes.stream()
-                .collect(Collectors.groupingBy(Vote::getRestaurant,
-                         Collectors.groupingBy(Vote::getRegDate,
-                         Collectors.counting())));
 
-        return history
-                .entrySet().stream()
-                .map(e->createTo(e.getKey(),e.getValue().get(LocalDate.now()).intValue(),e.getValue()))
-                .toList();
+    public static RestaurantTo createTo(RestaurantVoteCount count, int votes, Map<LocalDate, Long> history) {
+        return new RestaurantTo(count.getRestaurantId(), count.getName(), count.getLocation(), votes, history);
     }
 
     public static RestaurantTo createTo(Restaurant rest, int votes, Map<LocalDate, Long> history) {
         return new RestaurantTo(rest.getId(), rest.getName(), rest.getLocation(), votes, history);
     }
-}
\ No newline at end of file
+}
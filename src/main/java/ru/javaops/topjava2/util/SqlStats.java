@@ -0,0 +1,41 @@
+package ru.javaops.topjava2.util;
+
+import lombok.Getter;
+
+/**
+ * JDBC statements, rows and statement time of the current HTTP request, see SqlStatsFilter.
+ * Only the thread that started the stats is counted, background writers and schedulers are not.
+ */
+@Getter
+public class SqlStats {
+    private static final ThreadLocal<SqlStats> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long rows;
+    private long nanos;
+
+    public static SqlStats start() {
+        SqlStats stats = new SqlStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static void stop() {
+        CURRENT.remove();
+    }
+
+    //  null outside of a request
+    public static SqlStats current() {
+        return CURRENT.get();
+    }
+
+    public void executed(long nanos, long rows) {
+        statements++;
+        this.nanos += nanos;
+        this.rows += rows;
+    }
+
+    public void fetched() {
+        rows++;
+    }
+}
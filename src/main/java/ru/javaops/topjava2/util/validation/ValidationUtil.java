@@ -7,7 +7,6 @@ import ru.javaops.topjava2.error.LateTimeException;
 import ru.javaops.topjava2.error.NotFoundException;
 
 import java.time.LocalDate;
-import java.time.LocalTime;
 
 @UtilityClass
 public class ValidationUtil {
@@ -33,14 +32,8 @@ public class ValidationUtil {
         }
     }
 
-    public static void checkCurrentTime(LocalTime time){
-        if (LocalTime.now().isAfter(time)) {
-            throw new LateTimeException("Voting end at " + time + " o'clock");
-        }
-    }
-
-    public static void checkCurrentDate(LocalDate ld){
-        if (LocalDate.now().isAfter(ld)) {
+    public static void checkCurrentDate(LocalDate ld, LocalDate today){
+        if (today.isAfter(ld)) {
             throw new LateTimeException("You can't change old menu");
         }
     }
@@ -0,0 +1,96 @@
+package ru.javaops.topjava2.web;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.web.util.OnCommittedResponseWrapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import ru.javaops.topjava2.util.SqlStats;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL statements, rows and statement time of each request, authentication queries included.
+ * <p>
+ * Recorded as sql.statements, sql.rows summaries and sql.time timer tagged by uri pattern and method.
+ * With sql.stats.headers=true they are also returned in X-Sql-* headers, set when the response is committed:
+ * statements executed after it (e.g. while streaming the body) are in the metrics only.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "sql.stats.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlStatsFilter extends OncePerRequestFilter {
+    public static final String STATEMENTS_HEADER = "X-Sql-Statements";
+    public static final String ROWS_HEADER = "X-Sql-Rows";
+    public static final String TIME_HEADER = "X-Sql-Time-Ms";
+
+    @Value("${sql.stats.headers:false}")
+    private boolean headers;
+
+    private final MeterRegistry registry;
+
+    public SqlStatsFilter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStats stats = SqlStats.start();
+        HeaderWriter writer = headers ? new HeaderWriter(response, stats) : null;
+        try {
+            chain.doFilter(request, writer == null ? response : writer);
+        } finally {
+            SqlStats.stop();
+            if (writer != null && !response.isCommitted()) {
+                writer.onResponseCommitted();
+            }
+            record(request, stats);
+        }
+    }
+
+    private void record(HttpServletRequest request, SqlStats stats) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        String method = request.getMethod();
+        DistributionSummary.builder("sql.statements").tag("uri", uri).tag("method", method)
+                .register(registry).record(stats.getStatements());
+        DistributionSummary.builder("sql.rows").tag("uri", uri).tag("method", method)
+                .register(registry).record(stats.getRows());
+        Timer.builder("sql.time").tag("uri", uri).tag("method", method)
+                .register(registry).record(stats.getNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private static class HeaderWriter extends OnCommittedResponseWrapper {
+        private final SqlStats stats;
+        private boolean written;
+
+        private HeaderWriter(HttpServletResponse response, SqlStats stats) {
+            super(response);
+            this.stats = stats;
+        }
+
+        @Override
+        protected void onResponseCommitted() {
+            if (!written) {
+                written = true;
+                HttpServletResponse response = (HttpServletResponse) getResponse();
+                response.setHeader(STATEMENTS_HEADER, Integer.toString(stats.getStatements()));
+                response.setHeader(ROWS_HEADER, Long.toString(stats.getRows()));
+                response.setHeader(TIME_HEADER, String.format(Locale.ROOT, "%.3f", stats.getNanos() / 1e6));
+            }
+        }
+    }
+}
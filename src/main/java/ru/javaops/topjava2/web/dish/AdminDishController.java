@@ -25,6 +25,7 @@ import ru.javaops.topjava2.model.Dish;
 import ru.javaops.topjava2.model.Restaurant;
 import ru.javaops.topjava2.repository.DishRepository;
 import ru.javaops.topjava2.repository.RestaurantRepository;
+import ru.javaops.topjava2.service.MenuSnapshot;
 
 import javax.validation.Valid;
 import java.net.URI;
@@ -42,6 +43,7 @@ import static ru.javaops.topjava2.util.validation.ValidationUtil.checkNew;
 public class AdminDishController {
     private final DishRepository repository;
     private final RestaurantRepository restaurantRepository;
+    private final MenuSnapshot menuSnapshot;
     public final static String REST_URL = "/api/admin/restaurants/{restaurantId}/dishes";
 
     @Operation(
@@ -210,6 +212,7 @@ public class AdminDishController {
         assureIdConsistent(updated.getRestaurant(), restaurantId);
         updated.setName(dish.getName());
         updated.setPrice(dish.getPrice());
+        menuSnapshot.restaurantChanged(restaurantId);
     }
 
     private Dish getDishById(Integer id){
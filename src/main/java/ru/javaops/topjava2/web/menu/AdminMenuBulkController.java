@@ -0,0 +1,39 @@
+package ru.javaops.topjava2.web.menu;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.javaops.topjava2.service.MenuPublisher;
+import ru.javaops.topjava2.to.MenuImportResult;
+import ru.javaops.topjava2.to.MenuImportTo;
+
+import java.util.List;
+
+@RestController
+@RequestMapping(value = AdminMenuBulkController.REST_URL, produces = MediaType.APPLICATION_JSON_VALUE)
+@Slf4j
+@AllArgsConstructor
+@Tag(name = "AdminMenuBulkController")
+public class AdminMenuBulkController {
+    public final static String REST_URL = "/api/admin/menus";
+
+    private final MenuPublisher menuPublisher;
+
+    @Operation(
+            summary = "Publish menus of many restaurants",
+            description = "Each record is validated like single menu create. Valid menus are created, " +
+                    "invalid are skipped. Result for every record is returned in the request order."
+    )
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<MenuImportResult>> publish(@RequestBody List<MenuImportTo> menus) {
+        log.info("publish {} menus", menus.size());
+        return ResponseEntity.ok(menuPublisher.publish(menus));
+    }
+}
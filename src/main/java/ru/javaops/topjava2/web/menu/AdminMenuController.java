@@ -24,8 +24,11 @@ import ru.javaops.topjava2.model.Restaurant;
 import ru.javaops.topjava2.repository.DishRepository;
 import ru.javaops.topjava2.repository.MenuRepository;
 import ru.javaops.topjava2.repository.RestaurantRepository;
+import ru.javaops.topjava2.service.MenuSnapshot;
+import ru.javaops.topjava2.service.RestaurantDirectory;
 
 import java.net.URI;
+import java.time.Clock;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -46,10 +49,13 @@ public class AdminMenuController {
     private final MenuRepository menuRepository;
     private final DishRepository dishRepository;
     private final RestaurantRepository restaurantRepository;
+    private final RestaurantDirectory restaurantDirectory;
+    private final MenuSnapshot menuSnapshot;
+    private final Clock clock;
 
     @Operation(
             summary = "Create menu for the restaurant",
-            description = "Number of dishes must be between 2 and 5",
+            description = "Number of dishes must be between 2 and 5. Dishes must be of the restaurant.",
             parameters = {
                     @Parameter(name = "restaurantId",
                             description = "The id of restaurant. Use 3 for testing.",
@@ -73,22 +79,20 @@ public class AdminMenuController {
         }
 
         if (forDate != null) {
-            checkCurrentDate(forDate);
+            checkCurrentDate(forDate, LocalDate.now(clock));
         }
 
         Restaurant rest = restaurantRepository
                 .findById(restaurantId)
                 .orElseThrow(() -> new NotFoundException("Restaurant with id= " + restaurantId + " not found"));
 
-        List<Dish> dishList = dishes.stream()
-                .map(id -> dishRepository
-                        .findById(id)
-                        .orElseThrow(() -> new NotFoundException("Dish with id= " + id + " not found")))
-                .toList();
+        List<Dish> dishList = dishRepository.getAllOfRestaurant(dishes, restaurantId);
 
-        Menu menu = new Menu(null, forDate == null ? LocalDate.now() : forDate, rest, dishList);
+        Menu menu = new Menu(null, forDate == null ? LocalDate.now(clock) : forDate, rest, dishList);
 
         Menu created = menuRepository.save(menu);
+        restaurantDirectory.menuCreated(restaurantId, created.getForDate());
+        menuSnapshot.restaurantChanged(restaurantId);
 
         URI uriOfNewResource = ServletUriComponentsBuilder.fromCurrentContextPath()
                 .path(REST_URL + "/{id}")
@@ -111,7 +115,7 @@ public class AdminMenuController {
     )
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    @CacheEvict(cacheNames = {"rootVote","userVote"},allEntries = true)
+    @CacheEvict(cacheNames = "userVote", allEntries = true)
     public void delete(@PathVariable Integer restaurantId, @PathVariable Integer id) {
 
         log.info("Menu delete {}", id);
@@ -120,6 +124,8 @@ public class AdminMenuController {
                 .orElseThrow(() -> new NotFoundException(" Entity Menu with id = " + id + " not found"));
         assureIdConsistent(menu.getRestaurant(), restaurantId);
         menuRepository.deleteExisted(id);
+        restaurantDirectory.menuDeleted(restaurantId, menu.getForDate());
+        menuSnapshot.restaurantChanged(restaurantId);
     }
 
     @Operation(
@@ -195,7 +201,7 @@ public class AdminMenuController {
     @Operation(
             summary = "Patch menu for the restaurant",
             description = "You can update menu only for today. For test use 1,2,3 ids for dishes." +
-                    "Number of dishes must be between 2 and 5. Dish must be in db.",
+                    "Number of dishes must be between 2 and 5. Dishes must be of the restaurant.",
             parameters = {
                     @Parameter(name = "restaurantId",
                             description = "The id of restaurant. Use 1 for testing.",
@@ -221,14 +227,11 @@ public class AdminMenuController {
                 .findById(id)
                 .orElseThrow(() -> new NotFoundException("Menu with id=" + id + " not found"));
 
-        checkCurrentDate(menu.getForDate());
+        checkCurrentDate(menu.getForDate(), LocalDate.now(clock));
         assureIdConsistent(menu.getRestaurant(), restaurantId);
 
-        List<Dish> dishList = dishes.stream()
-                .map(i -> dishRepository
-                        .findById(i)
-                        .orElseThrow(() -> new NotFoundException("Dish with id=" + i + " not found")))
-                .toList();
+        List<Dish> dishList = dishRepository.getAllOfRestaurant(dishes, restaurantId);
         menu.setDishes(dishList);
+        menuSnapshot.restaurantChanged(restaurantId);
     }
 }
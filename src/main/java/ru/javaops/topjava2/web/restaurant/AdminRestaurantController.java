@@ -25,10 +25,13 @@ import ru.javaops.topjava2.error.NotFoundException;
 import ru.javaops.topjava2.model.Restaurant;
 import ru.javaops.topjava2.repository.MenuRepository;
 import ru.javaops.topjava2.repository.RestaurantRepository;
+import ru.javaops.topjava2.service.MenuSnapshot;
+import ru.javaops.topjava2.service.RestaurantDirectory;
+import ru.javaops.topjava2.service.VoteTally;
+import ru.javaops.topjava2.util.JsonBytes;
 
 import javax.validation.Valid;
 import java.net.URI;
-import java.util.List;
 
 import static ru.javaops.topjava2.util.validation.ValidationUtil.assureIdConsistent;
 import static ru.javaops.topjava2.util.validation.ValidationUtil.checkNew;
@@ -42,6 +45,9 @@ import static ru.javaops.topjava2.util.validation.ValidationUtil.checkNew;
 public class AdminRestaurantController {
     private final RestaurantRepository repository;
     private final MenuRepository menuRepository;
+    private final RestaurantDirectory restaurantDirectory;
+    private final MenuSnapshot menuSnapshot;
+    private final VoteTally voteTally;
     public final static String REST_URL = "/api/admin/restaurants";
 
     @Operation(
@@ -96,11 +102,14 @@ public class AdminRestaurantController {
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     @Transactional
-    @CacheEvict(cacheNames = {"rootVote","userVote","restaurants","dishes"},allEntries = true)
+    @CacheEvict(cacheNames = {"userVote","restaurants","dishes"},allEntries = true)
     public void delete(@PathVariable int id) {
         log.info("Restaurant delete {}", id);
         menuRepository.deleteByRestaurantId(id);
         repository.deleteExisted(id);
+        restaurantDirectory.restaurantDeleted(id);
+        menuSnapshot.restaurantChanged(id);
+        voteTally.reset();
     }
 
     @Operation(
@@ -120,11 +129,12 @@ public class AdminRestaurantController {
             })
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
     //@CacheEvict(allEntries = true)
-    @CacheEvict(cacheNames = {"rootVote","userVote","restaurants","dishes"},allEntries = true)
+    @CacheEvict(cacheNames = {"userVote","restaurants","dishes"},allEntries = true)
     public ResponseEntity<Restaurant> creatWithLocation(@RequestBody @Valid Restaurant rest) {
         log.info("create {}", rest);
         checkNew(rest);
         Restaurant created = repository.save(rest);
+        restaurantDirectory.restaurantCreated(created.id());
         URI uriOfNewResource = ServletUriComponentsBuilder.fromCurrentContextPath()
                 .path(REST_URL + "/{id}")
                 .buildAndExpand(created.getId()).toUri();
@@ -155,17 +165,19 @@ public class AdminRestaurantController {
     @PutMapping(value = "/{id}", consumes = MediaType.APPLICATION_JSON_VALUE)
     @Transactional
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    @CacheEvict(cacheNames = {"rootVote","userVote","restaurants","dishes"},allEntries = true)
+    @CacheEvict(cacheNames = {"userVote","restaurants","dishes"},allEntries = true)
     public void update(@RequestBody @Valid Restaurant rest, @PathVariable int id) {
         log.info("update {} with id={}", rest, id);
         assureIdConsistent(rest, id);
         repository.save(rest);
+        menuSnapshot.restaurantChanged(id);
+        voteTally.reset();
     }
     //https://stackoverflow.com/questions/60002234/how-to-annotate-array-of-objects-response-in-swagger
     @Operation(
             summary = "Get all restaurants",
             responses = {
-                    @ApiResponse(responseCode = "200", description = "List of restaurants",
+                    @ApiResponse(responseCode = "200", description = "List of restaurants, 304 if not changed since ETag",
                             content = @Content(mediaType = "application/json",
                                     array = @ArraySchema(schema = @Schema(implementation = Restaurant.class)))),
                     @ApiResponse(responseCode = "401", description = "Unauthorized", content = @Content())
@@ -173,8 +185,9 @@ public class AdminRestaurantController {
 
     @GetMapping
     @Cacheable
-    public List<Restaurant> getAll() {
+    public ResponseEntity<byte[]> getAll() {
         log.info("Restaurant getAll");
-        return repository.findAll(Sort.by(Sort.Direction.ASC, "id"));
+        //  cached serialized: hits don't run Jackson again
+        return JsonBytes.of(repository.findAll(Sort.by(Sort.Direction.ASC, "id"))).toResponse();
     }
 }
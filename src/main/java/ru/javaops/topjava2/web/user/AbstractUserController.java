@@ -6,9 +6,11 @@ import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.InitBinder;
+import ru.javaops.topjava2.config.CachingAuthenticationProvider;
 import ru.javaops.topjava2.error.NotFoundException;
 import ru.javaops.topjava2.model.User;
 import ru.javaops.topjava2.repository.UserRepository;
+import ru.javaops.topjava2.service.TokenService;
 import ru.javaops.topjava2.util.UserUtil;
 
 @Slf4j
@@ -20,6 +22,12 @@ public abstract class AbstractUserController {
     @Autowired
     private UniqueMailValidator emailValidator;
 
+    @Autowired
+    protected CachingAuthenticationProvider authenticationProvider;
+
+    @Autowired
+    protected TokenService tokenService;
+
     @InitBinder
     protected void initBinder(WebDataBinder binder) {
         binder.addValidators(emailValidator);
@@ -34,6 +42,8 @@ public abstract class AbstractUserController {
     public void delete(int id) {
         log.info("delete {}", id);
         repository.deleteExisted(id);
+        authenticationProvider.evict(id);
+        tokenService.revoke(id);
     }
 
     protected User prepareAndSave(User user) {
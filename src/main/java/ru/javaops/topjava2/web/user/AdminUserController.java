@@ -108,6 +108,9 @@ public class AdminUserController extends AbstractUserController {
         log.info("update {} with id={}", user, id);
         assureIdConsistent(user, id);
         prepareAndSave(user);
+        authenticationProvider.evict(id);
+        //  token holds roles
+        tokenService.revoke(id);
     }
 
     @Operation(
@@ -146,5 +149,9 @@ public class AdminUserController extends AbstractUserController {
         log.info(enabled ? "enable {}" : "disable {}", id);
         User user = repository.getById(id);
         user.setEnabled(enabled);
+        authenticationProvider.evict(id);
+        if (!enabled) {
+            tokenService.revoke(id);
+        }
     }
 }
\ No newline at end of file
@@ -75,5 +75,8 @@ public class ProfileController extends AbstractUserController {
         assureIdConsistent(userTo, authUser.id());
         User user = repository.getById(userTo.id());
         prepareAndSave(UserUtil.updateFromTo(user, userTo));
+        authenticationProvider.evict(authUser.id());
+        //  password replaced, token holds email
+        tokenService.revoke(authUser.id());
     }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package ru.javaops.topjava2.web.user;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.javaops.topjava2.service.TokenService;
+import ru.javaops.topjava2.to.TokenTo;
+import ru.javaops.topjava2.web.AuthUser;
+
+@RestController
+@RequestMapping(value = TokenController.REST_URL, produces = MediaType.APPLICATION_JSON_VALUE)
+@Slf4j
+@AllArgsConstructor
+@Tag(name = "TokenController", description = "Access token for HTTP Basic credentials.")
+public class TokenController {
+    public static final String REST_URL = "/api/auth/token";
+
+    private final TokenService tokenService;
+
+    @Operation(
+            summary = "Issue access token",
+            description = "Other API requests are authenticated with header 'Authorization: Bearer <token>'",
+            security = @SecurityRequirement(name = "basicAuth")
+    )
+    @PostMapping
+    public TokenTo issue(@AuthenticationPrincipal AuthUser authUser) {
+        log.info("issue token for {}", authUser.id());
+        return tokenService.issue(authUser);
+    }
+}
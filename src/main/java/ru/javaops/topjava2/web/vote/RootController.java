@@ -1,15 +1,18 @@
 package ru.javaops.topjava2.web.vote;
 
+import io.micrometer.core.annotation.Timed;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -18,60 +21,94 @@ import org.springframework.lang.Nullable;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import ru.javaops.topjava2.error.NotFoundException;
-import ru.javaops.topjava2.model.Menu;
-import ru.javaops.topjava2.model.Restaurant;
 import ru.javaops.topjava2.model.Vote;
-import ru.javaops.topjava2.repository.MenuRepository;
 import ru.javaops.topjava2.repository.RestaurantRepository;
 import ru.javaops.topjava2.repository.VoteRepository;
+import ru.javaops.topjava2.service.MenuSnapshot;
+import ru.javaops.topjava2.service.RestaurantDirectory;
+import ru.javaops.topjava2.service.ResultBroadcaster;
+import ru.javaops.topjava2.service.VoteArchive;
+import ru.javaops.topjava2.service.VoteHistory;
+import ru.javaops.topjava2.service.VoteMetrics;
+import ru.javaops.topjava2.service.VoteTally;
+import ru.javaops.topjava2.service.VoteWriter;
+import ru.javaops.topjava2.service.VotingDay;
 import ru.javaops.topjava2.to.MenuTo;
 import ru.javaops.topjava2.to.RestaurantTo;
+import ru.javaops.topjava2.to.RestaurantVoteCount;
 import ru.javaops.topjava2.to.VoteTo;
-import ru.javaops.topjava2.util.RestaurantUtil;
+import ru.javaops.topjava2.util.JsonUtil;
 import ru.javaops.topjava2.util.VoteUtil;
 import ru.javaops.topjava2.web.AuthUser;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.net.URI;
+import java.time.Clock;
 import java.time.LocalDate;
-import java.time.LocalTime;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static ru.javaops.topjava2.util.DateUtil.endDateUtil;
 import static ru.javaops.topjava2.util.DateUtil.startDateUtil;
-import static ru.javaops.topjava2.util.MenuUtil.getTos;
-import static ru.javaops.topjava2.util.validation.ValidationUtil.checkCurrentTime;
 
 @RestController
 @RequestMapping(value = RootController.REST_URL, produces = MediaType.APPLICATION_JSON_VALUE)
 @Slf4j
 @Tag(name = "RootController")
+//  vote.root timer per operation (uri, method, status, exception), with histogram for latency quantiles
+@Timed(value = "vote.root", histogram = true)
 public class RootController {
     public final static String REST_URL = "/api/root";
 
-    @Value("${limit-time.vote}")
-    @DateTimeFormat(iso = DateTimeFormat.ISO.TIME)
-    private LocalTime timeLimit;
-
-    private final MenuRepository menuRepository;
+    private final MenuSnapshot menuSnapshot;
     private final VoteRepository voteRepository;
     private final RestaurantRepository restaurantRepository;
+    private final RestaurantDirectory restaurantDirectory;
+    private final VoteTally voteTally;
+    private final ResultBroadcaster resultBroadcaster;
+    private final VoteHistory voteHistory;
+    private final VoteArchive voteArchive;
+    private final VoteMetrics voteMetrics;
+    private final VotingDay votingDay;
+    private final Optional<VoteWriter> voteWriter;
+    private final Clock clock;
 
-    public RootController(MenuRepository menuRepository, VoteRepository voteRepository, RestaurantRepository restaurantRepository) {
-        this.menuRepository = menuRepository;
+    public RootController(MenuSnapshot menuSnapshot, VoteRepository voteRepository,
+                          RestaurantRepository restaurantRepository, RestaurantDirectory restaurantDirectory,
+                          VoteTally voteTally, ResultBroadcaster resultBroadcaster, VoteHistory voteHistory,
+                          VoteArchive voteArchive, VoteMetrics voteMetrics, VotingDay votingDay,
+                          Optional<VoteWriter> voteWriter, Clock clock) {
+        this.menuSnapshot = menuSnapshot;
         this.voteRepository = voteRepository;
         this.restaurantRepository = restaurantRepository;
+        this.restaurantDirectory = restaurantDirectory;
+        this.voteTally = voteTally;
+        this.resultBroadcaster = resultBroadcaster;
+        this.voteHistory = voteHistory;
+        this.voteArchive = voteArchive;
+        this.voteMetrics = voteMetrics;
+        this.votingDay = votingDay;
+        this.voteWriter = voteWriter;
+        this.clock = clock;
     }
 
     @Operation(
             summary = "Get menus and restaurants for today vote",
+            description = "Ordered by restaurant id. For the next page pass id of the last restaurant as afterId",
+            responses = @ApiResponse(responseCode = "200", description = "Page of today menus, 304 if not changed since ETag",
+                    content = @Content(mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = MenuTo.class)))),
             parameters = {
-                    @Parameter(name = "pageNumber",
-                            description = "Page number ",
-                            content = @Content(examples = {@ExampleObject(value = "0")}),
-                            required = true),
+                    @Parameter(name = "afterId",
+                            description = "Restaurant id of the last menu of previous page, empty for the first page",
+                            content = @Content(examples = {@ExampleObject(value = "")})),
                     @Parameter(name = "pageSize",
                             description = "Page size ",
                             content = @Content(examples = {@ExampleObject(value = "10")}),
@@ -79,14 +116,13 @@ public class RootController {
             })
     @GetMapping()
     @ResponseStatus(HttpStatus.OK)
-    @Cacheable(cacheNames = "rootVote")
-    public ResponseEntity<List<MenuTo>> get(@RequestParam Integer pageNumber, @RequestParam Integer pageSize) {
-        log.info("get Menus for today");
-        List<Menu> menuList = menuRepository.getToday(PageRequest.of(pageNumber, pageSize));
-        return ResponseEntity.ok(getTos(menuList));
+    public ResponseEntity<byte[]> get(@RequestParam @Nullable Integer afterId, @RequestParam Integer pageSize) {
+        log.info("get Menus for today after restaurant {}", afterId);
+        return menuSnapshot.getPageJson(afterId == null ? 0 : afterId, pageSize).toResponse();
     }
 
     @Operation(summary = "Create vote for authenticated user",
+            description = "Restaurant must have menu for today. In write-behind ingestion mode vote is queued and 202 returned",
             parameters = {
                     @Parameter(name = "restaurantId",
                             description = "The id of restaurant.",
@@ -97,14 +133,31 @@ public class RootController {
 
     @PostMapping("/vote")
     @ResponseStatus(HttpStatus.OK)
-    @Transactional
-
+    //  not @Transactional: write-behind mode must not hold a connection while waiting for the writer
     public ResponseEntity<Vote> createVoteWithLocation(@RequestParam Integer restaurantId, @AuthenticationPrincipal AuthUser user) {
         log.info("Vote");
+        return votingDay.voting(() -> createVote(restaurantId, user));
+    }
 
-        checkCurrentTime(timeLimit);
-        Vote created = voteRepository
-                .save(new Vote(null, LocalDate.now(), user.id(), getRestaurantById(restaurantId)));
+    private ResponseEntity<Vote> createVote(int restaurantId, AuthUser user) {
+        checkVote(restaurantId);
+        LocalDateTime now = LocalDateTime.now(clock);
+        //  reference only, restaurant row is not loaded
+        Vote vote = new Vote(null, now.toLocalDate(), user.id(), restaurantRepository.getById(restaurantId));
+        vote.setRegTime(now.toLocalTime());
+        if (voteWriter.isPresent()) {
+            voteWriter.get().submit(vote);
+            return ResponseEntity.accepted().body(vote);
+        }
+        Vote created;
+        try {
+            created = voteRepository.save(vote);
+        } catch (DataIntegrityViolationException e) {
+            voteMetrics.rejected(e);
+            throw e;
+        }
+        voteTally.voted(created.getRegDate(), user.id(), restaurantId);
+        voteMetrics.created();
 
         URI uriOfNewResource = ServletUriComponentsBuilder.fromCurrentContextPath()
                 .path(REST_URL + "/{id}")
@@ -118,7 +171,7 @@ public class RootController {
     @Cacheable(cacheNames = "userVote", key = "#user.id()")
     public ResponseEntity<VoteTo> getVote(@AuthenticationPrincipal AuthUser user) {
         log.info("Vote");
-        Vote vote = voteRepository.findByUserId(user.id())
+        Vote vote = voteRepository.findByUserId(user.id(), LocalDate.now(clock))
                 .orElseThrow(() -> new NotFoundException("Vote with user id=" + user.id() + " not found"));
         return ResponseEntity.ok(VoteUtil.createTo(vote));
     }
@@ -140,12 +193,34 @@ public class RootController {
             @RequestParam @Nullable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
             @AuthenticationPrincipal AuthUser user) {
         log.info("Get history vote");
-        List<Vote> votes = voteRepository.findAllByUserIdFilter(user.id(), startDateUtil(startDate), endDateUtil(endDate));
-        return ResponseEntity.ok(VoteUtil.getTos(votes));
+        return ResponseEntity.ok(voteArchive.getUserHistory(user.id(), startDateUtil(startDate), endDateUtil(endDate)));
+    }
+
+    @Operation(summary = "Stream users history of voting as NDJSON, one vote per line",
+            parameters = {
+                    @Parameter(name = "startDate",
+                            description = "Start date. Format yyyy-MM-dd.",
+                            content = @Content(examples = {@ExampleObject(value = "2020-02-21")})),
+                    @Parameter(name = "endDate",
+                            description = "End date. Format yyyy-MM-dd.",
+                            content = @Content(examples = {@ExampleObject(value = "2022-02-21")}))
+            }
+    )
+    @GetMapping(value = "/vote/user/history/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Transactional(readOnly = true)
+    public void streamAllVotes(
+            @RequestParam @Nullable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @Nullable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @AuthenticationPrincipal AuthUser user, HttpServletResponse response) throws IOException {
+        log.info("Stream history vote");
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        try (Stream<VoteTo> votes = voteArchive.streamUserHistory(user.id(), startDateUtil(startDate), endDateUtil(endDate))) {
+            JsonUtil.writeValues(response.getOutputStream(), votes);
+        }
     }
 
     @Operation(summary = "Update vote for authenticated user",
-            description = "if user not voting yet - create vote",
+            description = "if user not voting yet - create vote. Restaurant must have menu for today",
             parameters = {
                     @Parameter(name = "restaurantId",
                             description = "The id of restaurant.",
@@ -156,26 +231,46 @@ public class RootController {
 
     @PutMapping("/vote")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    @Transactional
     @CacheEvict(cacheNames = "userVote",key="#user.id()",allEntries = true)
     public void update(@RequestParam Integer restaurantId, @AuthenticationPrincipal AuthUser user) {
-        log.info("Get history vote");
-        checkCurrentTime(timeLimit);
-        Optional<Vote> vote = voteRepository.findByUserId(user.id());
-        if (vote.isPresent()) {
-            vote.get().setRestaurant(getRestaurantById(restaurantId));
-            vote.get().setRegTime(LocalTime.now());
-        } else {
-            voteRepository.save(new Vote(null, LocalDate.now(), user.id(), getRestaurantById(restaurantId)));
+        log.info("Update vote");
+        votingDay.voting(() -> {
+            checkVote(restaurantId);
+            LocalDateTime now = LocalDateTime.now(clock).truncatedTo(ChronoUnit.SECONDS);
+            voteRepository.upsert(now.toLocalDate(), user.id(), restaurantId, now.toLocalTime());
+            voteTally.voted(now.toLocalDate(), user.id(), restaurantId);
+            voteMetrics.updated();
+        });
+    }
+
+    private void checkVote(int restaurantId) {
+        try {
+            votingDay.checkOpen();
+            restaurantDirectory.checkVotable(restaurantId);
+        } catch (RuntimeException e) {
+            voteMetrics.rejected(e);
+            throw e;
         }
     }
 
-    @Operation(summary = "Get voting result for today")
+    @Operation(summary = "Get voting result for today",
+            responses = @ApiResponse(responseCode = "200", description = "Result, 304 if not changed since ETag",
+                    content = @Content(mediaType = "application/json",
+                            array = @ArraySchema(schema = @Schema(implementation = RestaurantTo.class)))))
     @GetMapping("/vote/result")
     @ResponseStatus(HttpStatus.OK)
-    public ResponseEntity<List<RestaurantTo>> getResult() {
+    public ResponseEntity<byte[]> getResult() {
         log.info("get Result for today");
-        return ResponseEntity.ok(RestaurantUtil.getTos(voteRepository.getResult()));
+        return votingDay.getResultJson().toResponse();
+    }
+
+    @Operation(summary = "Subscribe to voting result for today",
+            description = "Server-Sent Events: 'result' event with the whole result on subscribe and after votes change it, " +
+                    "at most vote.result.stream.max-rate per second. Slow subscribers are disconnected.")
+    @GetMapping(value = "/vote/result/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamResult() {
+        log.info("subscribe to Result for today");
+        return resultBroadcaster.subscribe();
     }
 
     @Operation(summary = "Get history of voting",
@@ -195,12 +290,29 @@ public class RootController {
             @RequestParam @Nullable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
         log.info("get history result");
 
-        return ResponseEntity.ok(RestaurantUtil
-                .getHistoryTos(voteRepository.getResultHistory(startDateUtil(startDate),endDateUtil(endDate))));
+        return ResponseEntity.ok(voteHistory.getResultHistory(startDateUtil(startDate), endDateUtil(endDate)));
     }
 
-    private Restaurant getRestaurantById(Integer id){
-        return restaurantRepository.findById(id)
-                .orElseThrow(() -> new NotFoundException("Restaurant with id=" + id + " not found"));
+    @Operation(summary = "Stream history of voting as NDJSON, one restaurant per day per line",
+            parameters = {
+                    @Parameter(name = "startDate",
+                            description = "Start date. Format yyyy-MM-dd.",
+                            content = @Content(examples = {@ExampleObject(value = "2020-02-21")})),
+                    @Parameter(name = "endDate",
+                            description = "End date. Format yyyy-MM-dd.",
+                            content = @Content(examples = {@ExampleObject(value = "2022-02-21")}))
+            }
+    )
+    @GetMapping(value = "/vote/result/history/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Transactional(readOnly = true)
+    public void streamResultHistory(
+            @RequestParam @Nullable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @Nullable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            HttpServletResponse response) throws IOException {
+        log.info("stream history result");
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        try (Stream<RestaurantVoteCount> counts = voteHistory.streamResultHistory(startDateUtil(startDate), endDateUtil(endDate))) {
+            JsonUtil.writeValues(response.getOutputStream(), counts);
+        }
     }
 }
@@ -0,0 +1,76 @@
+--  Schema formerly generated by Hibernate ddl-auto, constraint names are referenced by GlobalExceptionHandler
+
+CREATE TABLE users
+(
+    id         INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name       VARCHAR(100)            NOT NULL,
+    email      VARCHAR(100)            NOT NULL,
+    password   VARCHAR(100)            NOT NULL,
+    enabled    BOOL      DEFAULT TRUE  NOT NULL,
+    registered TIMESTAMP DEFAULT NOW() NOT NULL,
+    CONSTRAINT users_unique_email_idx UNIQUE (email)
+);
+
+CREATE TABLE user_roles
+(
+    user_id INTEGER NOT NULL,
+    role    VARCHAR(255),
+    CONSTRAINT user_roles_unique_idx UNIQUE (user_id, role),
+    CONSTRAINT user_roles_user_fk FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
+
+CREATE TABLE restaurant
+(
+    id       INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name     VARCHAR(100) NOT NULL,
+    location VARCHAR(100) NOT NULL,
+    CONSTRAINT restaurant_unique_name_location_idx UNIQUE (name, location)
+);
+
+CREATE TABLE dish
+(
+    id            INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name          VARCHAR(100) NOT NULL,
+    price         INTEGER      NOT NULL CHECK (price >= 10),
+    restaurant_id INTEGER      NOT NULL,
+    CONSTRAINT dish_unique_name_restaurant_idx UNIQUE (name, price, restaurant_id),
+    CONSTRAINT dish_restaurant_fk FOREIGN KEY (restaurant_id) REFERENCES restaurant (id) ON DELETE CASCADE
+);
+
+CREATE TABLE menu
+(
+    id            INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    for_date      DATE DEFAULT NOW() NOT NULL,
+    restaurant_id INTEGER            NOT NULL,
+    CONSTRAINT menu_unique_for_date_restaurant_id_idx UNIQUE (for_date, restaurant_id),
+    CONSTRAINT menu_restaurant_fk FOREIGN KEY (restaurant_id) REFERENCES restaurant (id)
+);
+
+CREATE TABLE menu_dishes
+(
+    menu_id   INTEGER NOT NULL,
+    dishes_id INTEGER NOT NULL,
+    CONSTRAINT menu_dishes_menu_fk FOREIGN KEY (menu_id) REFERENCES menu (id),
+    CONSTRAINT menu_dishes_dish_fk FOREIGN KEY (dishes_id) REFERENCES dish (id)
+);
+
+CREATE TABLE vote
+(
+    id            INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    reg_date      DATE DEFAULT NOW() NOT NULL,
+    reg_time      TIME DEFAULT NOW() NOT NULL,
+    user_id       INTEGER            NOT NULL,
+    restaurant_id INTEGER            NOT NULL,
+    CONSTRAINT vote_unique_reg_date_user_id_idx UNIQUE (reg_date, user_id),
+    CONSTRAINT vote_restaurant_fk FOREIGN KEY (restaurant_id) REFERENCES restaurant (id) ON DELETE CASCADE
+);
+
+CREATE TABLE vote_daily_summary
+(
+    id            INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    reg_date      DATE    NOT NULL,
+    restaurant_id INTEGER NOT NULL,
+    votes         BIGINT  NOT NULL,
+    CONSTRAINT vote_daily_summary_unique_reg_date_restaurant_id_idx UNIQUE (reg_date, restaurant_id),
+    CONSTRAINT vote_daily_summary_restaurant_fk FOREIGN KEY (restaurant_id) REFERENCES restaurant (id) ON DELETE CASCADE
+);
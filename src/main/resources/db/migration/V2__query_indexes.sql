@@ -0,0 +1,20 @@
+--  Indexes for the queries of VoteRepository, MenuRepository and DishRepository, checked by QueryPlanTest.
+--  Queries by the leading columns of unique constraints use their indexes:
+--  vote(reg_date, user_id) - today vote of user, today user votes; menu(for_date, restaurant_id) - menus of date.
+
+--  results of day or date range, COUNT(v) reads vote id: the query is answered from the index only
+CREATE INDEX vote_reg_date_restaurant_id_idx ON vote (reg_date, restaurant_id, id);
+
+--  vote history of user
+CREATE INDEX vote_user_id_reg_date_idx ON vote (user_id, reg_date);
+
+--  menus of restaurant by dates, menu of restaurant for today
+CREATE INDEX menu_restaurant_id_for_date_idx ON menu (restaurant_id, for_date);
+
+--  dishes of menus: dish ids are read from the index only
+CREATE INDEX menu_dishes_menu_id_dishes_id_idx ON menu_dishes (menu_id, dishes_id);
+
+--  dishes of restaurant. H2 created an index for the foreign key, re-created foreign key uses this one instead
+ALTER TABLE dish DROP CONSTRAINT dish_restaurant_fk;
+CREATE INDEX dish_restaurant_id_idx ON dish (restaurant_id);
+ALTER TABLE dish ADD CONSTRAINT dish_restaurant_fk FOREIGN KEY (restaurant_id) REFERENCES restaurant (id) ON DELETE CASCADE;
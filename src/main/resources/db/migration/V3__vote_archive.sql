@@ -0,0 +1,15 @@
+--  Votes of closed days are moved from vote by VoteArchive, vote keeps the open days only.
+--  Rows keep their vote id. H2 has no table partitioning: one archive table, read by date range through its indexes.
+CREATE TABLE vote_archive
+(
+    id            INTEGER PRIMARY KEY,
+    reg_date      DATE    NOT NULL,
+    reg_time      TIME    NOT NULL,
+    user_id       INTEGER NOT NULL,
+    restaurant_id INTEGER NOT NULL,
+    CONSTRAINT vote_archive_unique_user_id_reg_date_idx UNIQUE (user_id, reg_date),
+    CONSTRAINT vote_archive_restaurant_fk FOREIGN KEY (restaurant_id) REFERENCES restaurant (id) ON DELETE CASCADE
+);
+
+--  daily summary of archived days
+CREATE INDEX vote_archive_reg_date_restaurant_id_idx ON vote_archive (reg_date, restaurant_id, id);
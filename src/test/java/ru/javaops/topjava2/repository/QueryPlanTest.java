@@ -0,0 +1,140 @@
+package ru.javaops.topjava2.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static ru.javaops.topjava2.web.AbstractTestData.*;
+
+/**
+ * Every query of VoteRepository, VoteSummaryRepository, MenuRepository and DishRepository is executed, its SQL is recorded by
+ * {@link Recorder} and EXPLAIN of it must have no full table scan and use the index made for it,
+ * see db/migration/V2__query_indexes.sql
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+        "ru.javaops.topjava2.repository.QueryPlanTest$Recorder")
+@Transactional
+@ActiveProfiles("test")
+class QueryPlanTest {
+    private static final LocalDate TODAY = LocalDate.now();
+    private static final LocalDate START = TODAY.minusDays(30);
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @Autowired
+    private VoteSummaryRepository summaryRepository;
+
+    @Autowired
+    private MenuRepository menuRepository;
+
+    @Autowired
+    private DishRepository dishRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void voteQueries() {
+        assertIndexed(() -> voteRepository.getUserVotes(TODAY), "VOTE_UNIQUE_REG_DATE_USER_ID_IDX");
+        assertIndexed(() -> voteRepository.findByUserId(USER_ID, LocalDate.now()), "VOTE_UNIQUE_REG_DATE_USER_ID_IDX");
+        assertIndexed(() -> voteRepository.findAllByUserIdFilter(USER_ID, START, TODAY), "VOTE_USER_ID_REG_DATE_IDX");
+        assertIndexed(() -> {
+            try (Stream<?> votes = voteRepository.streamAllByUserIdFilter(USER_ID, START, TODAY)) {
+                votes.forEach(v -> {
+                });
+            }
+        }, "VOTE_USER_ID_REG_DATE_IDX");
+        assertIndexed(() -> voteRepository.upsert(TODAY, USER_ID, REST2_ID, LocalTime.now()));
+    }
+
+    @Test
+    void summaryQueries() {
+        assertIndexed(() -> summaryRepository.deleteRange(START, TODAY), "VOTE_DAILY_SUMMARY_UNIQUE_REG_DATE_RESTAURANT_ID_IDX");
+        //  day totals are aggregated from vote and vote_archive
+        assertIndexed(() -> summaryRepository.insertRange(START, TODAY),
+                "VOTE_REG_DATE_RESTAURANT_ID_IDX", "VOTE_ARCHIVE_REG_DATE_RESTAURANT_ID_IDX");
+        assertIndexed(() -> summaryRepository.getResultHistory(START, TODAY), "VOTE_DAILY_SUMMARY_UNIQUE_REG_DATE_RESTAURANT_ID_IDX");
+    }
+
+    @Test
+    void menuQueries() {
+        assertIndexed(() -> menuRepository.findByIdWithRestaurant(MENU1_ID), "MENU_DISHES_MENU_ID_DISHES_ID_IDX");
+        assertIndexed(() -> menuRepository.getWithDishes(TODAY),
+                "MENU_UNIQUE_FOR_DATE_RESTAURANT_ID_IDX", "MENU_DISHES_MENU_ID_DISHES_ID_IDX");
+        assertIndexed(() -> menuRepository.getWithDishes(TODAY, List.of(REST1_ID, REST2_ID)), "MENU_DISHES_MENU_ID_DISHES_ID_IDX");
+        assertIndexed(() -> menuRepository.findAllByRestaurant(REST2_ID, START, TODAY),
+                "MENU_RESTAURANT_ID_FOR_DATE_IDX", "MENU_DISHES_MENU_ID_DISHES_ID_IDX");
+        assertIndexed(() -> menuRepository.findByRestaurantId(REST1_ID), "MENU_UNIQUE_FOR_DATE_RESTAURANT_ID_IDX");
+        assertIndexed(() -> menuRepository.getRestaurantIds(TODAY), "MENU_UNIQUE_FOR_DATE_RESTAURANT_ID_IDX");
+        assertIndexed(() -> menuRepository.getKeys(List.of(TODAY, TODAY.plusDays(1))), "MENU_UNIQUE_FOR_DATE_RESTAURANT_ID_IDX");
+        assertIndexed(() -> menuRepository.deleteByRestaurantId(NOT_FOUND));
+    }
+
+    @Test
+    void dishQueries() {
+        assertIndexed(() -> dishRepository.getDishesByRestaurantId(REST1_ID), "DISH_RESTAURANT_ID_IDX");
+        assertIndexed(() -> dishRepository.findByIdWithRestaurant(DISH1_ID));
+        assertIndexed(() -> dishRepository.getRestaurantIds(List.of(DISH1_ID, DISH2_ID)));
+        assertIndexed(() -> dishRepository.findAllByIdInAndRestaurantId(List.of(DISH1_ID, DISH2_ID), REST1_ID));
+    }
+
+    //  no statement of the query scans a whole table, each of expected indexes is used by some statement
+    private void assertIndexed(Runnable query, String... indexes) {
+        Recorder.SQL.clear();
+        query.run();
+        List<String> statements = List.copyOf(Recorder.SQL);
+        assertFalse(statements.isEmpty(), "No SQL recorded");
+        String plans = statements.stream()
+                .map(this::explain)
+                .peek(plan -> assertFalse(plan.contains("tableScan"), () -> "Full scan in plan:\n" + plan))
+                .collect(Collectors.joining("\n"));
+        for (String index : indexes) {
+            assertTrue(plans.contains(index), () -> "Index " + index + " is not used:\n" + plans);
+        }
+    }
+
+    //  parameters are not set: plan is chosen by indexes, not by values
+    private String explain(String sql) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement("EXPLAIN " + sql)) {
+                for (int i = 1; i <= ps.getParameterMetaData().getParameterCount(); i++) {
+                    ps.setObject(i, null);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    StringBuilder plan = new StringBuilder();
+                    while (rs.next()) {
+                        plan.append(rs.getString(1));
+                    }
+                    return plan.toString();
+                }
+            }
+        });
+    }
+
+    public static class Recorder implements StatementInspector {
+        private static final List<String> SQL = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            SQL.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ru.javaops.topjava2.service;
+
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import java.time.*;
+
+//  starts on today before the vote end of the tests, moved by them
+class TestClock extends Clock {
+    static final LocalTime BEFORE_END = LocalTime.of(10, 0);
+    static final LocalTime AFTER_END = LocalTime.of(11, 0, 1);
+
+    private volatile Instant instant;
+
+    TestClock() {
+        set(LocalDate.now(), BEFORE_END);
+    }
+
+    void set(LocalDate date, LocalTime time) {
+        instant = date.atTime(time).atZone(getZone()).toInstant();
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneId.systemDefault();
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Instant instant() {
+        return instant;
+    }
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        @Primary
+        TestClock testClock() {
+            return new TestClock();
+        }
+    }
+}
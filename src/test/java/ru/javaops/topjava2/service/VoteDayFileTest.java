@@ -0,0 +1,79 @@
+package ru.javaops.topjava2.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VoteDayFileTest {
+    private static final LocalDate DAY = LocalDate.of(2021, 6, 1);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTrip() throws IOException {
+        List<VoteDayFile.Row> rows = rows(1000, 5, 1);
+        Path file = dir.resolve("day.bin");
+        VoteDayFile.write(file, DAY, rows);
+        //  user delta, time, restaurant and id take 7 bytes per vote here
+        assertTrue(Files.size(file) < 8 * rows.size(), () -> "File size " + file.toFile().length());
+        assertRows(VoteDayFile.open(file), rows);
+    }
+
+    @Test
+    void wideColumns() throws IOException {
+        List<VoteDayFile.Row> rows = rows(2000, 300, 100);
+        Path file = dir.resolve("day.bin");
+        VoteDayFile.write(file, DAY, rows);
+        assertRows(VoteDayFile.open(file), rows);
+    }
+
+    @Test
+    void empty() throws IOException {
+        Path file = dir.resolve("day.bin");
+        VoteDayFile.write(file, DAY, List.of());
+        VoteDayFile dayFile = VoteDayFile.open(file);
+        assertEquals(0, dayFile.size());
+        assertNull(dayFile.find(1));
+    }
+
+    @Test
+    void notVoteFile() throws IOException {
+        Path file = Files.writeString(dir.resolve("day.bin"), "not a vote file");
+        assertThrows(IllegalStateException.class, () -> VoteDayFile.open(file));
+    }
+
+    //  users 3, 6, 9... in random order, ids spread by idStep
+    private static List<VoteDayFile.Row> rows(int count, int restaurants, int idStep) {
+        Random random = new Random(count);
+        List<VoteDayFile.Row> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new VoteDayFile.Row(100_000 + i * idStep, 3 * (i + 1), 1 + random.nextInt(restaurants),
+                    LocalTime.ofSecondOfDay(random.nextInt(24 * 60 * 60))));
+        }
+        Collections.shuffle(rows, random);
+        return rows;
+    }
+
+    private static void assertRows(VoteDayFile dayFile, List<VoteDayFile.Row> rows) {
+        assertEquals(DAY, dayFile.getDate());
+        assertEquals(rows.size(), dayFile.size());
+        for (VoteDayFile.Row row : rows) {
+            assertEquals(row, dayFile.find(row.userId()));
+            assertNull(dayFile.find(row.userId() + 1));
+        }
+        assertNull(dayFile.find(0));
+        assertNull(dayFile.find(Integer.MAX_VALUE));
+    }
+}
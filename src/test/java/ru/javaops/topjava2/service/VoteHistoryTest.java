@@ -0,0 +1,95 @@
+package ru.javaops.topjava2.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.javaops.topjava2.error.LateTimeException;
+import ru.javaops.topjava2.repository.VoteSummaryRepository;
+import ru.javaops.topjava2.to.RestaurantTo;
+import ru.javaops.topjava2.to.RestaurantVoteCount;
+import ru.javaops.topjava2.web.vote.RootController;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.javaops.topjava2.service.TestClock.AFTER_END;
+import static ru.javaops.topjava2.web.AbstractTestData.*;
+
+//  the current day is summarized only by VotingDay, after the votes queued before the cutoff are written
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "limit-time.vote=11:00",
+        "vote.ingestion.mode=write-behind",
+        "vote.ingestion.ack=queued"
+})
+@Import(TestClock.Config.class)
+@DirtiesContext
+class VoteHistoryTest {
+
+    @Autowired
+    private VoteHistory voteHistory;
+    @Autowired
+    private VotingDay votingDay;
+    @Autowired
+    private VoteSummaryRepository summaryRepository;
+    @Autowired
+    private TestClock clock;
+    @Autowired
+    private MockMvc mockMvc;
+    @SpyBean
+    private JdbcTemplate jdbcTemplate;
+    @SpyBean
+    private MenuSnapshot menuSnapshot;
+
+    @Test
+    @WithUserDetails(value = USER2_MAIL)
+    void queuedVoteSummarized() throws Exception {
+        LocalDate date = LocalDate.now(clock);
+        CountDownLatch flush = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            flush.await();
+            return invocation.callRealMethod();
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+
+        mockMvc.perform(MockMvcRequestBuilders.post(RootController.REST_URL + "/vote")
+                        .param("restaurantId", String.valueOf(REST1_ID)))
+                .andExpect(status().isAccepted());
+
+        try {
+            clock.set(date, AFTER_END);
+            assertThrows(LateTimeException.class, votingDay::checkOpen);
+            //  the day is closing and waits for the writer: history shows the live tally and doesn't summarize it
+            List<RestaurantTo> history = voteHistory.getResultHistory(date, date);
+            assertEquals(Map.of(REST1_ID, 1, REST2_ID, 1),
+                    history.stream().collect(Collectors.toMap(RestaurantTo::getId, RestaurantTo::getVotes)));
+            assertEquals(List.of(), summaryRepository.getResultHistory(date, date));
+        } finally {
+            flush.countDown();
+        }
+
+        verify(menuSnapshot, timeout(5000)).prepare(date.plusDays(1));
+        assertEquals(Map.of(REST1_ID, 2L, REST2_ID, 1L), summaryRepository.getResultHistory(date, date).stream()
+                .collect(Collectors.toMap(RestaurantVoteCount::getRestaurantId, RestaurantVoteCount::getVotes)));
+    }
+}
@@ -0,0 +1,193 @@
+package ru.javaops.topjava2.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.javaops.topjava2.error.LateTimeException;
+import ru.javaops.topjava2.repository.VoteRepository;
+import ru.javaops.topjava2.repository.VoteSummaryRepository;
+import ru.javaops.topjava2.to.MenuImportTo;
+import ru.javaops.topjava2.to.RestaurantVoteCount;
+import ru.javaops.topjava2.util.JsonUtil;
+import ru.javaops.topjava2.web.SqlStatsFilter;
+import ru.javaops.topjava2.web.menu.AdminMenuBulkController;
+import ru.javaops.topjava2.web.vote.RootController;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.javaops.topjava2.service.TestClock.AFTER_END;
+import static ru.javaops.topjava2.service.TestClock.BEFORE_END;
+import static ru.javaops.topjava2.web.AbstractTestData.*;
+import static ru.javaops.topjava2.web.menu.MenuTestData.MATCHER_MENU_TO;
+import static ru.javaops.topjava2.web.menu.MenuTestData.allMenuTosForToday;
+
+//  each test starts on a fresh DB with the clock on the demo data today before the vote end
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "limit-time.vote=11:00",
+        "spring.cache.type=generic"
+})
+@Import(TestClock.Config.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class VotingDayTest {
+    private static final int USER2_ID = 3;
+
+    @Autowired
+    private VotingDay votingDay;
+    @Autowired
+    private VoteTally voteTally;
+    @Autowired
+    private VoteRepository voteRepository;
+    @Autowired
+    private VoteSummaryRepository summaryRepository;
+    @Autowired
+    private RestaurantDirectory restaurantDirectory;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private TestClock clock;
+    @Autowired
+    private MockMvc mockMvc;
+    @SpyBean
+    private MenuSnapshot menuSnapshot;
+
+    @Test
+    void inFlightVoteCounted() {
+        LocalDate date = open(0);
+        votingDay.voting(() -> {
+            clock.set(date, AFTER_END);
+            assertThrows(LateTimeException.class, votingDay::checkOpen);
+            //  the day is closing on the scheduler meanwhile
+            sleep();
+            voteRepository.upsert(date, USER2_ID, REST1_ID, BEFORE_END);
+            voteTally.voted(date, USER2_ID, REST1_ID);
+        });
+        awaitClosed(date);
+        String frozen = votingDay.getResultJson().etag();
+        assertEquals(voteTally.getResultJson().etag(), frozen);
+        assertEquals(Map.of(REST1_ID, 2L, REST2_ID, 1L), votes(voteTally.getCounts()));
+        assertEquals(Map.of(REST1_ID, 2L, REST2_ID, 1L), votes(summaryRepository.getResultHistory(date, date)));
+    }
+
+    @Test
+    @WithUserDetails(value = USER1_MAIL)
+    void resultFrozen() throws Exception {
+        LocalDate date = open(0);
+        close(date);
+        String frozen = voteTally.getResultJson().etag();
+        voteTally.voted(date, USER2_ID, REST2_ID);
+        assertNotEquals(frozen, voteTally.getResultJson().etag());
+        mockMvc.perform(MockMvcRequestBuilders.get(RootController.REST_URL + "/vote/result"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, frozen));
+    }
+
+    @Test
+    void midnightReopens() {
+        LocalDate date = open(0);
+        close(date);
+        Cache userVote = cacheManager.getCache("userVote");
+        assertNotNull(userVote);
+        userVote.put(USER_ID, REST1_ID);
+
+        clock.set(date.plusDays(1), LocalTime.MIDNIGHT);
+        votingDay.startDay();
+        votingDay.checkOpen();
+        assertNull(userVote.get(USER_ID));
+        assertEquals(voteTally.getResultJson().etag(), votingDay.getResultJson().etag());
+        assertEquals(Map.of(REST1_ID, 1L, REST2_ID, 1L), votes(summaryRepository.getResultHistory(date, date)));
+        //  no votes and menus yet for the new day
+        assertEquals(List.of(), voteTally.getCounts());
+        assertTrue(restaurantDirectory.exists(REST1_ID));
+        assertFalse(restaurantDirectory.hasTodayMenu(REST1_ID));
+    }
+
+    @Test
+    @WithUserDetails(value = USER1_MAIL)
+    void preparedMenusNextDay() throws Exception {
+        //  yesterday closed: today menus are loaded ahead
+        LocalDate date = open(-1);
+        close(date);
+
+        clock.set(date.plusDays(1), LocalTime.MIDNIGHT);
+        mockMvc.perform(MockMvcRequestBuilders.get(RootController.REST_URL)
+                        .param("pageSize", "10"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(SqlStatsFilter.STATEMENTS_HEADER, "0"))
+                .andExpect(MATCHER_MENU_TO.contentJson(allMenuTosForToday));
+    }
+
+    private LocalDate open(int days) {
+        LocalDate date = LocalDate.now().plusDays(days);
+        clock.set(date, BEFORE_END);
+        votingDay.checkOpen();
+        return date;
+    }
+
+    private void close(LocalDate date) {
+        clock.set(date, AFTER_END);
+        assertThrows(LateTimeException.class, votingDay::checkOpen);
+        awaitClosed(date);
+    }
+
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void publishedAfterEnd() throws Exception {
+        LocalDate date = open(0);
+        close(date);
+        mockMvc.perform(MockMvcRequestBuilders.post(AdminMenuBulkController.REST_URL + "/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(JsonUtil.writeValue(List.of(new MenuImportTo(REST3_ID, date.plusDays(1), List.of(7, 8))))))
+                .andExpect(status().isOk());
+
+        clock.set(date.plusDays(1), LocalTime.MIDNIGHT);
+        mockMvc.perform(MockMvcRequestBuilders.get(RootController.REST_URL)
+                        .param("pageSize", "10"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(SqlStatsFilter.STATEMENTS_HEADER, "0"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(REST3_ID));
+    }
+
+    //  tomorrow menus are prepared last, after the result is frozen
+    private void awaitClosed(LocalDate date) {
+        verify(menuSnapshot, timeout(5000)).prepare(date.plusDays(1));
+    }
+
+    private static Map<Integer, Long> votes(List<RestaurantVoteCount> counts) {
+        return counts.stream().collect(Collectors.toMap(RestaurantVoteCount::getRestaurantId, RestaurantVoteCount::getVotes));
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(200);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
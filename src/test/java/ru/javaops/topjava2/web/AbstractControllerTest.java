@@ -4,12 +4,23 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.ResultMatcher;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
 import org.springframework.transaction.annotation.Transactional;
+import ru.javaops.topjava2.to.TokenTo;
+import ru.javaops.topjava2.util.JsonUtil;
+import ru.javaops.topjava2.web.user.TokenController;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
@@ -24,4 +35,29 @@ public abstract class AbstractControllerTest {
     protected ResultActions perform(MockHttpServletRequestBuilder builder) throws Exception {
         return mockMvc.perform(builder);
     }
+
+    //  pins query count of the request to catch N+1 regressions.
+    //  Statements flushed at the end of the rolled back test transaction are not executed, so not counted
+    protected static ResultMatcher maxSqlStatements(int max) {
+        return result -> {
+            String statements = result.getResponse().getHeader(SqlStatsFilter.STATEMENTS_HEADER);
+            assertNotNull(statements, "No " + SqlStatsFilter.STATEMENTS_HEADER + " header");
+            assertTrue(Integer.parseInt(statements) <= max,
+                    () -> "Expected at most " + max + " SQL statements, but was " + statements);
+        };
+    }
+
+    protected String getToken(String email, String password) throws Exception {
+        String json = perform(MockMvcRequestBuilders.post(TokenController.REST_URL)
+                .with(httpBasic(email, password)))
+                .andReturn().getResponse().getContentAsString();
+        return JsonUtil.readValue(json, TokenTo.class).getToken();
+    }
+
+    protected static RequestPostProcessor bearer(String token) {
+        return request -> {
+            request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+            return request;
+        };
+    }
 }
@@ -254,6 +254,7 @@ class AdminDishControllerTest extends AbstractControllerTest {
     void getAll() throws Exception {
         perform(MockMvcRequestBuilders.get(REST_URL + REST1_ID + "/dishes"))
                 .andExpect(status().isOk())
+                .andExpect(maxSqlStatements(2))
                 .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
                 .andExpect(MATCHER.contentJson(allDishesOfRestaurant1));
     }
@@ -0,0 +1,78 @@
+package ru.javaops.topjava2.web.menu;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import ru.javaops.topjava2.model.Dish;
+import ru.javaops.topjava2.model.Menu;
+import ru.javaops.topjava2.repository.MenuRepository;
+import ru.javaops.topjava2.to.MenuImportResult;
+import ru.javaops.topjava2.to.MenuImportTo;
+import ru.javaops.topjava2.util.JsonUtil;
+import ru.javaops.topjava2.web.AbstractControllerTest;
+import ru.javaops.topjava2.web.GlobalExceptionHandler;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.javaops.topjava2.web.menu.MenuTestData.*;
+
+class AdminMenuBulkControllerTest extends AbstractControllerTest {
+
+    private static final String REST_URL = AdminMenuBulkController.REST_URL + "/bulk";
+
+    @Autowired
+    MenuRepository menuRepository;
+
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void publish() throws Exception {
+        LocalDate today = LocalDate.now();
+        List<MenuImportTo> menus = List.of(
+                new MenuImportTo(REST3_ID, null, List.of(7, 8)),
+                new MenuImportTo(REST1_ID, today, List.of(1, 2)),
+                new MenuImportTo(REST3_ID, today.plusDays(1), List.of(7, 1)),
+                new MenuImportTo(NOT_FOUND, today, List.of(1, 2)),
+                new MenuImportTo(REST2_ID, today.minusDays(1), List.of(4, 5)),
+                new MenuImportTo(REST3_ID, today, List.of(8, 9)),
+                new MenuImportTo(REST2_ID, today.plusDays(1), List.of(4)));
+
+        ResultActions action = perform(MockMvcRequestBuilders.post(REST_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonUtil.writeValue(menus)))
+                .andDo(print())
+                .andExpect(status().isOk());
+
+        List<MenuImportResult> results = JsonUtil.readValues(action.andReturn().getResponse().getContentAsString(), MenuImportResult.class);
+        assertEquals(menus.size(), results.size());
+        assertNotNull(results.get(0).getMenuId());
+        assertNull(results.get(0).getError());
+        assertEquals(GlobalExceptionHandler.EXCEPTION_DUPLICATE_MENU, results.get(1).getError());
+        assertEquals("Dishes with ids=[1] not found for restaurant id=" + REST3_ID, results.get(2).getError());
+        assertEquals("Restaurant with id=" + NOT_FOUND + " not found", results.get(3).getError());
+        assertEquals("You can't change old menu", results.get(4).getError());
+        assertEquals(GlobalExceptionHandler.EXCEPTION_DUPLICATE_MENU, results.get(5).getError());
+        assertEquals("Wrong dishes number", results.get(6).getError());
+        results.subList(1, results.size()).forEach(r -> assertNull(r.getMenuId()));
+
+        Menu created = menuRepository.getById(results.get(0).getMenuId());
+        assertEquals(today, created.getForDate());
+        assertEquals(List.of(8, 7), created.getDishes().stream().map(Dish::id).toList());
+        assertTrue(menuRepository.findAllByRestaurant(REST3_ID, today.plusDays(1), today.plusDays(1)).isEmpty());
+    }
+
+    @Test
+    @WithUserDetails(value = USER1_MAIL)
+    void publishForbidden() throws Exception {
+        perform(MockMvcRequestBuilders.post(REST_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonUtil.writeValue(List.of(new MenuImportTo(REST3_ID, null, List.of(7, 8))))))
+                .andExpect(status().isForbidden());
+    }
+}
@@ -10,17 +10,23 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import ru.javaops.topjava2.model.Menu;
 import ru.javaops.topjava2.repository.MenuRepository;
+import ru.javaops.topjava2.util.MenuUtil;
 import ru.javaops.topjava2.web.AbstractControllerTest;
 import ru.javaops.topjava2.web.GlobalExceptionHandler;
+import ru.javaops.topjava2.web.vote.RootController;
 
 import java.time.LocalDate;
+import java.util.List;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.javaops.topjava2.web.dish.DishTestData.dish4;
+import static ru.javaops.topjava2.web.dish.DishTestData.dish5;
 import static ru.javaops.topjava2.web.menu.MenuTestData.*;
+import static ru.javaops.topjava2.web.restaurant.RestaurantTestData.rest2;
 
 class AdminMenuControllerTest extends AbstractControllerTest {
 
@@ -88,6 +94,19 @@ class AdminMenuControllerTest extends AbstractControllerTest {
         MATCHER.assertMatch(menuRepository.getById(newId), newMenu);
     }
 
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void creatForeignDishes() throws Exception {
+        perform(MockMvcRequestBuilders
+                .post(REST_URL + REST3_ID + "/menu")
+                .param("forDate", "")
+                .param("dishes", "1", "7", Integer.toString(NOT_FOUND))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string(containsString("Dishes with ids=[1, " + NOT_FOUND + "] not found")));
+    }
+
     @Test
     @WithUserDetails(value = ADMIN_MAIL)
     void creatDuplicate() throws Exception {
@@ -142,6 +161,7 @@ class AdminMenuControllerTest extends AbstractControllerTest {
     void get() throws Exception {
         perform(MockMvcRequestBuilders.get(REST_URL + REST2_ID + "/menu/" + MENU2_ID))
                 .andExpect(status().isOk())
+                .andExpect(maxSqlStatements(1))
                 .andDo(print())
                 .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
                 .andExpect(MATCHER.contentJson(menu2));
@@ -191,6 +211,7 @@ class AdminMenuControllerTest extends AbstractControllerTest {
                 .param("startDate", "")
                 .param("endDate", ""))
                 .andExpect(status().isOk())
+                .andExpect(maxSqlStatements(2))
                 .andDo(print())
                 .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
                 .andExpect(MATCHER.contentJson(allMenusOfRestaurant2));
@@ -216,6 +237,25 @@ class AdminMenuControllerTest extends AbstractControllerTest {
                 .andExpect(status().isNoContent());
     }
 
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    @Transactional(propagation = Propagation.NEVER)
+    void updateRefreshesTodayMenus() throws Exception {
+        perform(MockMvcRequestBuilders.patch(REST_URL + REST2_ID + "/menu/" + MENU5_ID)
+                .param("dishes", "4", "5"))
+                .andExpect(status().isNoContent());
+        try {
+            perform(MockMvcRequestBuilders.get(RootController.REST_URL)
+                    .param("pageSize", "10"))
+                    .andExpect(status().isOk())
+                    .andExpect(MATCHER_MENU_TO.contentJson(allMenuTosForToday.get(0), MenuUtil.createTo(rest2, List.of(dish4, dish5))));
+        } finally {
+            perform(MockMvcRequestBuilders.patch(REST_URL + REST2_ID + "/menu/" + MENU5_ID)
+                    .param("dishes", "4", "5", "6"))
+                    .andExpect(status().isNoContent());
+        }
+    }
+
     @Test
     @WithUserDetails(value = USER1_MAIL)
     void updateForbidden() throws Exception {
@@ -246,6 +286,17 @@ class AdminMenuControllerTest extends AbstractControllerTest {
                 .andExpect(status().isUnprocessableEntity());
     }
 
+    @Test
+    @WithUserDetails(value = ADMIN_MAIL)
+    void updateForeignDishes() throws Exception {
+        perform(MockMvcRequestBuilders.patch(REST_URL + REST2_ID + "/menu/" + MENU5_ID)
+                .param("dishes", "4", "7")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andDo(print())
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string(containsString("Dishes with ids=[7] not found")));
+    }
+
     @Test
     @WithUserDetails(value = ADMIN_MAIL)
     void updateNotEnoughDish() throws Exception {
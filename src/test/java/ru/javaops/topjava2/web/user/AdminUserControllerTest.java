@@ -11,11 +11,14 @@ import org.springframework.transaction.annotation.Transactional;
 import ru.javaops.topjava2.model.Role;
 import ru.javaops.topjava2.model.User;
 import ru.javaops.topjava2.repository.UserRepository;
+import ru.javaops.topjava2.to.UserTo;
+import ru.javaops.topjava2.util.JsonUtil;
 import ru.javaops.topjava2.web.AbstractControllerTest;
 import ru.javaops.topjava2.web.GlobalExceptionHandler;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -147,6 +150,53 @@ class AdminUserControllerTest extends AbstractControllerTest {
         assertFalse(userRepository.getById(USER_ID).isEnabled());
     }
 
+    @Test
+    @Transactional(propagation = Propagation.NEVER)
+    void updateEvictsAuthentication() throws Exception {
+        perform(MockMvcRequestBuilders.post(TokenController.REST_URL)
+                .with(httpBasic(USER1_MAIL, "password")))
+                .andExpect(status().isOk());
+        String adminToken = getToken(ADMIN_MAIL, "admin");
+        try {
+            perform(MockMvcRequestBuilders.put(REST_URL + USER_ID)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(jsonWithPassword(user1, "newPass"))
+                    .with(bearer(adminToken)))
+                    .andExpect(status().isNoContent());
+            perform(MockMvcRequestBuilders.post(TokenController.REST_URL)
+                    .with(httpBasic(USER1_MAIL, "password")))
+                    .andExpect(status().isUnauthorized());
+        } finally {
+            perform(MockMvcRequestBuilders.put(REST_URL + USER_ID)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(jsonWithPassword(user1, "password"))
+                    .with(bearer(adminToken)))
+                    .andExpect(status().isNoContent());
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NEVER)
+    void profileUpdateRevokesTokens() throws Exception {
+        String token = getToken(USER1_MAIL, "password");
+        try {
+            perform(MockMvcRequestBuilders.put(ProfileController.REST_URL)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(JsonUtil.writeValue(new UserTo(null, user1.getName(), USER1_MAIL, "newPass")))
+                    .with(bearer(token)))
+                    .andExpect(status().isNoContent());
+            perform(MockMvcRequestBuilders.get(ProfileController.REST_URL)
+                    .with(bearer(token)))
+                    .andExpect(status().isUnauthorized());
+        } finally {
+            perform(MockMvcRequestBuilders.put(ProfileController.REST_URL)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(JsonUtil.writeValue(new UserTo(null, user1.getName(), USER1_MAIL, "password")))
+                    .with(bearer(getToken(USER1_MAIL, "newPass"))))
+                    .andExpect(status().isNoContent());
+        }
+    }
+
     @Test
     @WithUserDetails(value = ADMIN_MAIL)
     void createInvalid() throws Exception {
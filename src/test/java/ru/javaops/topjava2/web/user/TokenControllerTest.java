@@ -0,0 +1,83 @@
+package ru.javaops.topjava2.web.user;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.javaops.topjava2.web.AbstractControllerTest;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.javaops.topjava2.web.user.UserTestData.*;
+
+class TokenControllerTest extends AbstractControllerTest {
+
+    @Test
+    void issue() throws Exception {
+        String token = getToken(USER1_MAIL, "password");
+        perform(MockMvcRequestBuilders.get(ProfileController.REST_URL)
+                .with(bearer(token)))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(MATCHER.contentJson(user1));
+    }
+
+    @Test
+    void issueUnAuth() throws Exception {
+        perform(MockMvcRequestBuilders.post(TokenController.REST_URL)
+                .with(httpBasic(USER1_MAIL, "wrong")))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void basicRejected() throws Exception {
+        perform(MockMvcRequestBuilders.get(ProfileController.REST_URL)
+                .with(httpBasic(USER1_MAIL, "password")))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void forged() throws Exception {
+        String token = getToken(USER1_MAIL, "password");
+        String payload = token.substring(0, token.indexOf('.'));
+        String adminToken = getToken(ADMIN_MAIL, "admin");
+        perform(MockMvcRequestBuilders.get(AdminUserController.REST_URL)
+                .with(bearer(payload + adminToken.substring(adminToken.indexOf('.')))))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void userRole() throws Exception {
+        perform(MockMvcRequestBuilders.get(AdminUserController.REST_URL)
+                .with(bearer(getToken(USER1_MAIL, "password"))))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NEVER)
+    void disableRevokes() throws Exception {
+        String token = getToken(USER1_MAIL, "password");
+        String adminToken = getToken(ADMIN_MAIL, "admin");
+        try {
+            perform(MockMvcRequestBuilders.patch(AdminUserController.REST_URL + '/' + USER_ID)
+                    .param("enabled", "false")
+                    .with(bearer(adminToken)))
+                    .andExpect(status().isNoContent());
+            perform(MockMvcRequestBuilders.get(ProfileController.REST_URL)
+                    .with(bearer(token)))
+                    .andExpect(status().isUnauthorized());
+            perform(MockMvcRequestBuilders.post(TokenController.REST_URL)
+                    .with(httpBasic(USER1_MAIL, "password")))
+                    .andExpect(status().isUnauthorized());
+        } finally {
+            perform(MockMvcRequestBuilders.patch(AdminUserController.REST_URL + '/' + USER_ID)
+                    .param("enabled", "true")
+                    .with(bearer(adminToken)))
+                    .andExpect(status().isNoContent());
+        }
+        perform(MockMvcRequestBuilders.get(ProfileController.REST_URL)
+                .with(bearer(getToken(USER1_MAIL, "password"))))
+                .andExpect(status().isOk());
+    }
+}
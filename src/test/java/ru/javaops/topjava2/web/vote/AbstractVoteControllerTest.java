@@ -2,14 +2,26 @@ package ru.javaops.topjava2.web.vote;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithUserDetails;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import ru.javaops.topjava2.repository.VoteRepository;
+import ru.javaops.topjava2.to.RestaurantVoteCount;
+import ru.javaops.topjava2.to.VoteTo;
+import ru.javaops.topjava2.util.JsonUtil;
+import ru.javaops.topjava2.util.RestaurantUtil;
 import ru.javaops.topjava2.web.AbstractControllerTest;
 
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static ru.javaops.topjava2.web.menu.MenuTestData.MATCHER_MENU_TO;
 import static ru.javaops.topjava2.web.menu.MenuTestData.allMenuTosForToday;
@@ -25,18 +37,48 @@ public abstract class AbstractVoteControllerTest  extends AbstractControllerTest
     @WithUserDetails(value = USER1_MAIL)
     void get() throws Exception {
         perform(MockMvcRequestBuilders.get(REST_URL)
-                .param("pageNumber","0")
                 .param("pageSize","10"))
                 .andExpect(status().isOk())
+                .andExpect(maxSqlStatements(0))
                 .andDo(print())
                 .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
                 .andExpect(MATCHER_MENU_TO.contentJson(allMenuTosForToday));
     }
 
+    @Test
+    @WithUserDetails(value = USER1_MAIL)
+    void getNextPage() throws Exception {
+        perform(MockMvcRequestBuilders.get(REST_URL)
+                .param("afterId", Integer.toString(REST1_ID))
+                .param("pageSize", "1"))
+                .andExpect(status().isOk())
+                .andDo(print())
+                .andExpect(MATCHER_MENU_TO.contentJson(List.of(allMenuTosForToday.get(1))));
+    }
+
+    @Test
+    @WithUserDetails(value = USER1_MAIL)
+    void getMaxPageSize() throws Exception {
+        perform(MockMvcRequestBuilders.get(REST_URL)
+                .param("afterId", Integer.toString(REST1_ID))
+                .param("pageSize", Integer.toString(Integer.MAX_VALUE)))
+                .andExpect(status().isOk())
+                .andExpect(MATCHER_MENU_TO.contentJson(List.of(allMenuTosForToday.get(1))));
+    }
+
+    @Test
+    @WithUserDetails(value = USER1_MAIL)
+    void getLastPage() throws Exception {
+        perform(MockMvcRequestBuilders.get(REST_URL)
+                .param("afterId", Integer.toString(REST2_ID))
+                .param("pageSize", "10"))
+                .andExpect(status().isOk())
+                .andExpect(MATCHER_MENU_TO.contentJson());
+    }
+
     @Test
     void getUnAuth() throws Exception {
         perform(MockMvcRequestBuilders.get(REST_URL)
-                .param("pageNumber","0")
                 .param("pageSize","10"))
                 .andDo(print())
                 .andExpect(status().isUnauthorized());
@@ -46,7 +88,7 @@ public abstract class AbstractVoteControllerTest  extends AbstractControllerTest
     @WithUserDetails(value = USER1_MAIL)
     void getBadRequest() throws Exception {
         perform(MockMvcRequestBuilders.get(REST_URL)
-                .param("pageNumber","dfs")
+                .param("afterId","dfs")
                 .param("pageSize","sdf"))
                 .andDo(print())
                 .andExpect(status().isBadRequest());
@@ -57,11 +99,42 @@ public abstract class AbstractVoteControllerTest  extends AbstractControllerTest
     void getResult() throws Exception {
         perform(MockMvcRequestBuilders.get(REST_URL + "/vote/result"))
                 .andExpect(status().isOk())
+                .andExpect(maxSqlStatements(0))
                 .andDo(print())
                 .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
                 .andExpect(MATCHER_RESTAURANT_TO.contentJson(voteResult));
     }
 
+    @Test
+    @WithUserDetails(value = USER1_MAIL)
+    void getResultNotModified() throws Exception {
+        String etag = perform(MockMvcRequestBuilders.get(REST_URL + "/vote/result"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        perform(MockMvcRequestBuilders.get(REST_URL + "/vote/result")
+                .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @WithUserDetails(value = USER1_MAIL)
+    void getNotModified() throws Exception {
+        String etag = perform(MockMvcRequestBuilders.get(REST_URL)
+                .param("pageSize", "10"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        perform(MockMvcRequestBuilders.get(REST_URL)
+                .param("pageSize", "10")
+                .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        perform(MockMvcRequestBuilders.get(REST_URL)
+                .param("pageSize", "1")
+                .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
     @Test
     void getResultUnAuth() throws Exception {
         perform(MockMvcRequestBuilders.get(REST_URL + "/vote/result"))
@@ -93,11 +166,35 @@ public abstract class AbstractVoteControllerTest  extends AbstractControllerTest
                 .param("startDate", "")
                 .param("endDate",""))
                 .andExpect(status().isOk())
+                .andExpect(maxSqlStatements(2))
                 .andDo(print())
                 .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
                 .andExpect(MATCHER_VOTE_TO.contentJson(votesTo));
     }
 
+    @Test
+    @WithUserDetails(value = USER1_MAIL)
+    void getAllVotesArchived() throws Exception {
+        //  yesterday vote is moved to vote_archive on startup
+        assertTrue(voteRepository.findById(VOTE1_ID).isEmpty());
+        perform(MockMvcRequestBuilders.get(REST_URL + "/vote/user/history")
+                .param("startDate", "")
+                .param("endDate", LocalDate.now().minusDays(1).toString()))
+                .andExpect(status().isOk())
+                .andExpect(MATCHER_VOTE_TO.contentJson(List.of(votesTo.get(0))));
+    }
+
+    @Test
+    @WithUserDetails(value = USER1_MAIL)
+    void streamAllVotes() throws Exception {
+        String ndjson = perform(MockMvcRequestBuilders.get(REST_URL + "/vote/user/history/stream"))
+                .andExpect(status().isOk())
+                .andDo(print())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        MATCHER_VOTE_TO.assertMatch(JsonUtil.readValues(ndjson, VoteTo.class), votesTo);
+    }
+
     @Test
     void getAllVotesUnAuth() throws Exception {
         perform(MockMvcRequestBuilders.get(REST_URL + "/vote/user/history")
@@ -129,6 +226,49 @@ public abstract class AbstractVoteControllerTest  extends AbstractControllerTest
                 .andExpect(MATCHER_RESTAURANT_TO.contentJson(historyResult));
     }
 
+    @Test
+    @WithUserDetails(value = USER1_MAIL)
+    void getResultHistoryToday() throws Exception {
+        perform(MockMvcRequestBuilders.get(REST_URL + "/vote/result/history")
+                .param("startDate", LocalDate.now().toString())
+                .param("endDate", LocalDate.now().toString()))
+                .andExpect(status().isOk())
+                .andDo(print())
+                .andExpect(MATCHER_RESTAURANT_TO.contentJson(voteResult));
+    }
+
+    @Test
+    @WithUserDetails(value = USER1_MAIL)
+    void getResultHistoryYesterday() throws Exception {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        perform(MockMvcRequestBuilders.get(REST_URL + "/vote/result/history")
+                .param("startDate", yesterday.toString())
+                .param("endDate", yesterday.toString()))
+                .andExpect(status().isOk())
+                .andDo(print())
+                .andExpect(MATCHER_RESTAURANT_TO.contentJson(
+                        RestaurantUtil.createTo(rest1, 0, Map.of(yesterday, 1L)),
+                        RestaurantUtil.createTo(rest2, 0, Map.of(yesterday, 1L))));
+    }
+
+    @Test
+    @WithUserDetails(value = USER1_MAIL)
+    void streamResultHistory() throws Exception {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        String ndjson = perform(MockMvcRequestBuilders.get(REST_URL + "/vote/result/history/stream")
+                .param("startDate", yesterday.toString()))
+                .andExpect(status().isOk())
+                .andDo(print())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(List.of(
+                        new RestaurantVoteCount(REST1_ID, rest1.getName(), rest1.getLocation(), yesterday, 1L),
+                        new RestaurantVoteCount(REST2_ID, rest2.getName(), rest2.getLocation(), yesterday, 1L),
+                        new RestaurantVoteCount(REST1_ID, rest1.getName(), rest1.getLocation(), LocalDate.now(), 1L),
+                        new RestaurantVoteCount(REST2_ID, rest2.getName(), rest2.getLocation(), LocalDate.now(), 1L)),
+                JsonUtil.readValues(ndjson, RestaurantVoteCount.class));
+    }
+
     @Test
     void getResultHistoryUnAuth() throws Exception {
         perform(MockMvcRequestBuilders.get(REST_URL + "/vote/result/history")
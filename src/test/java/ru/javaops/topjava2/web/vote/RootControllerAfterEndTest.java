@@ -1,12 +1,15 @@
 package ru.javaops.topjava2.web.vote;
 
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.test.context.support.WithUserDetails;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -17,15 +20,21 @@ import static ru.javaops.topjava2.web.AbstractTestData.*;
 })
 public class RootControllerAfterEndTest extends AbstractVoteControllerTest {
 
+    @Autowired
+    private MeterRegistry registry;
+
     @Test
     @WithUserDetails(value = USER2_MAIL)
     void createVoteWithLocation() throws Exception {
+        double rejected = registry.counter("votes.rejected", "reason", "late").count();
         perform(MockMvcRequestBuilders
                 .post(REST_URL + "/vote")
                 .param("restaurantId", Integer.toString(REST1_ID)))
                 .andDo(print())
                 .andExpect(status().isLocked())
+                .andExpect(maxSqlStatements(0))
                 .andExpect(content().string(containsString("Voting end at")));
+        assertEquals(rejected + 1, registry.counter("votes.rejected", "reason", "late").count());
     }
 
     @Test
@@ -35,6 +44,7 @@ public class RootControllerAfterEndTest extends AbstractVoteControllerTest {
                 .param("restaurantId", Integer.toString(REST2_ID)))
                 .andDo(print())
                 .andExpect(status().isLocked())
+                .andExpect(maxSqlStatements(0))
                 .andExpect(content().string(containsString("Voting end at")));
 
     }
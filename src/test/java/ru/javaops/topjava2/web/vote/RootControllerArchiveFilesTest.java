@@ -0,0 +1,53 @@
+package ru.javaops.topjava2.web.vote;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.javaops.topjava2.web.vote.RootTestData.*;
+
+//  all vote tests with history of closed days read from exported files
+@TestPropertySource(properties = {
+        "limit-time.vote=23:59",
+        "vote.archive.files.enabled=true"
+})
+class RootControllerArchiveFilesTest extends AbstractVoteControllerTest {
+
+    private static final Path DIR = Path.of("target", "vote-files", UUID.randomUUID().toString());
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void filesDir(DynamicPropertyRegistry registry) {
+        registry.add("vote.archive.files.dir", DIR::toString);
+    }
+
+    @Test
+    @WithUserDetails(value = USER1_MAIL)
+    void getAllVotesExported() throws Exception {
+        //  yesterday votes are exported to file and deleted from vote_archive on startup
+        assertTrue(Files.exists(DIR.resolve("votes-" + LocalDate.now().minusDays(1) + ".bin")));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM vote_archive", Integer.class));
+        perform(MockMvcRequestBuilders.get(REST_URL + "/vote/user/history")
+                .param("startDate", "")
+                .param("endDate", LocalDate.now().minusDays(1).toString()))
+                .andExpect(status().isOk())
+                .andExpect(maxSqlStatements(1))
+                .andExpect(MATCHER_VOTE_TO.contentJson(List.of(votesTo.get(0))));
+    }
+}
@@ -1,20 +1,37 @@
 package ru.javaops.topjava2.web.vote;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithUserDetails;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.javaops.topjava2.model.Vote;
+import ru.javaops.topjava2.service.VoteTally;
+import ru.javaops.topjava2.util.JsonUtil;
+import ru.javaops.topjava2.util.RestaurantUtil;
 import ru.javaops.topjava2.web.GlobalExceptionHandler;
 
 import java.time.LocalDate;
+import java.util.Map;
 
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.javaops.topjava2.web.restaurant.RestaurantTestData.MATCHER_RESTAURANT_TO;
+import static ru.javaops.topjava2.web.restaurant.RestaurantTestData.rest1;
+import static ru.javaops.topjava2.web.restaurant.RestaurantTestData.restTo2;
+import static ru.javaops.topjava2.web.restaurant.RestaurantTestData.voteResult;
 import static ru.javaops.topjava2.web.user.UserTestData.user1;
 import static ru.javaops.topjava2.web.vote.RootTestData.*;
 
@@ -25,15 +42,22 @@ import static ru.javaops.topjava2.web.vote.RootTestData.*;
 
 class RootControllerBeforeEndTest extends AbstractVoteControllerTest{
 
+    @Autowired
+    private VoteTally voteTally;
+
+    @Autowired
+    private MeterRegistry registry;
 
     @Test
     @WithUserDetails(value = USER2_MAIL)
     void createVoteWithLocation() throws Exception {
+        double accepted = registry.counter("votes.accepted", "operation", "create").count();
         ResultActions action = perform(MockMvcRequestBuilders
                 .post(REST_URL + "/vote")
                 .param("restaurantId",Integer.toString(REST1_ID)))
                 .andDo(print())
-                .andExpect(status().isCreated());
+                .andExpect(status().isCreated())
+                .andExpect(maxSqlStatements(1));
 
         Vote created = MATCHER.readFromJson(action);
         int newId = created.getId();
@@ -41,7 +65,41 @@ class RootControllerBeforeEndTest extends AbstractVoteControllerTest{
         newVote.setRegTime(created.getRegTime());
         MATCHER.assertMatch(created,newVote);
         MATCHER.assertMatch(voteRepository.getById(newId),newVote);
+        Assertions.assertEquals(accepted + 1, registry.counter("votes.accepted", "operation", "create").count());
+    }
 
+    @Test
+    @WithUserDetails(value = USER2_MAIL)
+    @Transactional(propagation = Propagation.NEVER)
+    void createVoteUpdatesResult() throws Exception {
+        ResultActions action = perform(MockMvcRequestBuilders
+                .post(REST_URL + "/vote")
+                .param("restaurantId", Integer.toString(REST1_ID)))
+                .andExpect(status().isCreated());
+        int newId = MATCHER.readFromJson(action).id();
+        try {
+            perform(MockMvcRequestBuilders.get(REST_URL + "/vote/result"))
+                    .andExpect(status().isOk())
+                    .andExpect(MATCHER_RESTAURANT_TO.contentJson(
+                            RestaurantUtil.createTo(rest1, 2, Map.of(LocalDate.now(), 2L)), restTo2));
+        } finally {
+            voteRepository.deleteExisted(newId);
+            voteTally.reset();
+        }
+    }
+
+    @Test
+    @WithUserDetails(value = USER2_MAIL)
+    void streamResult() throws Exception {
+        MvcResult result = perform(MockMvcRequestBuilders.get(REST_URL + "/vote/result/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String expected = "event:result\ndata:" + JsonUtil.writeValue(voteResult);
+        for (int i = 0; i < 50 && !result.getResponse().getContentAsString().contains(expected); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(result.getResponse().getContentAsString(), containsString(expected));
+        assertThat(result.getResponse().getContentType(), startsWith(MediaType.TEXT_EVENT_STREAM_VALUE));
     }
 
     @Test
@@ -54,15 +112,28 @@ class RootControllerBeforeEndTest extends AbstractVoteControllerTest{
                 .andExpect(status().isUnprocessableEntity());
     }
 
+    @Test
+    @WithUserDetails(value = USER2_MAIL)
+    void createWithoutMenu() throws Exception {
+        perform(MockMvcRequestBuilders
+                .post(REST_URL + "/vote")
+                .param("restaurantId", Integer.toString(REST3_ID)))
+                .andDo(print())
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string(containsString("has no menu for today")));
+    }
+
     @Test
     @WithUserDetails(value = USER1_MAIL)
     void createDuplicate() throws Exception {
+        double rejected = registry.counter("votes.rejected", "reason", "duplicate").count();
         perform(MockMvcRequestBuilders
                 .post(REST_URL + "/vote")
                 .param("restaurantId",Integer.toString(REST1_ID)))
                 .andDo(print())
                 .andExpect(status().isUnprocessableEntity())
                 .andExpect(content().string(containsString(GlobalExceptionHandler.EXCEPTION_DUPLICATE_VOTE)));
+        Assertions.assertEquals(rejected + 1, registry.counter("votes.rejected", "reason", "duplicate").count());
     }
 
     @Test
@@ -73,7 +144,7 @@ class RootControllerBeforeEndTest extends AbstractVoteControllerTest{
                 .andExpect(status().isNoContent())
                 .andDo(print());
 
-        Vote updated = voteRepository.findByUserId(user1.getId()).get();
+        Vote updated = voteRepository.findByUserId(user1.getId(), LocalDate.now()).get();
         Assertions.assertEquals(updated.getRestaurant().getId(),REST2_ID);
     }
 
@@ -85,15 +156,41 @@ class RootControllerBeforeEndTest extends AbstractVoteControllerTest{
                 .andDo(print());
     }
 
+    @Test
+    @WithUserDetails(value = USER2_MAIL)
+    void updateWithoutVote() throws Exception {
+        perform(MockMvcRequestBuilders.put(REST_URL + "/vote")
+                .param("restaurantId",Integer.toString(REST2_ID)))
+                .andExpect(status().isNoContent())
+                .andDo(print());
+
+        Vote created = voteRepository.findByUserId(3, LocalDate.now()).get();
+        Assertions.assertEquals(created.getRestaurant().getId(),REST2_ID);
+    }
+
     @Test
     @WithUserDetails(value = USER1_MAIL)
     void updateNotFound() throws Exception {
         perform(MockMvcRequestBuilders.put(REST_URL + "/vote")
                 .param("restaurantId",Integer.toString(NOT_FOUND)))
                 .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string(containsString("Restaurant with id=" + NOT_FOUND + " not found")))
                 .andDo(print());
     }
 
+    @Test
+    @WithUserDetails(value = USER1_MAIL)
+    void updateWithoutMenu() throws Exception {
+        perform(MockMvcRequestBuilders.put(REST_URL + "/vote")
+                .param("restaurantId", Integer.toString(REST3_ID)))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string(containsString("has no menu for today")))
+                .andDo(print());
+
+        Vote notChanged = voteRepository.findByUserId(user1.getId(), LocalDate.now()).get();
+        Assertions.assertEquals(notChanged.getRestaurant().getId(), REST1_ID);
+    }
+
 }
 
 
@@ -0,0 +1,79 @@
+package ru.javaops.topjava2.web.vote;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.test.context.support.WithUserDetails;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.javaops.topjava2.model.Vote;
+import ru.javaops.topjava2.repository.VoteRepository;
+import ru.javaops.topjava2.service.VoteTally;
+import ru.javaops.topjava2.web.AbstractControllerTest;
+import ru.javaops.topjava2.web.GlobalExceptionHandler;
+
+import java.time.LocalDate;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static ru.javaops.topjava2.web.vote.RootTestData.*;
+
+@TestPropertySource(properties = {
+        "limit-time.vote=23:59",
+        "vote.ingestion.mode=write-behind",
+        "vote.ingestion.ack=flushed"
+})
+class RootControllerWriteBehindTest extends AbstractControllerTest {
+    private static final String REST_URL = RootController.REST_URL;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @Autowired
+    private VoteTally voteTally;
+
+    @Test
+    @WithUserDetails(value = USER2_MAIL)
+    @Transactional(propagation = Propagation.NEVER)
+    void createVoteWithLocation() throws Exception {
+        perform(MockMvcRequestBuilders
+                .post(REST_URL + "/vote")
+                .param("restaurantId", Integer.toString(REST2_ID)))
+                .andDo(print())
+                .andExpect(status().isAccepted());
+
+        //  written and committed by background writer
+        Vote created = voteRepository.findByUserId(3, LocalDate.now()).orElseThrow();
+        try {
+            assertEquals(REST2_ID, created.getRestaurant().id());
+        } finally {
+            voteRepository.deleteExisted(created.id());
+            voteTally.reset();
+        }
+    }
+
+    @Test
+    @WithUserDetails(value = USER1_MAIL)
+    void createDuplicate() throws Exception {
+        perform(MockMvcRequestBuilders
+                .post(REST_URL + "/vote")
+                .param("restaurantId", Integer.toString(REST1_ID)))
+                .andDo(print())
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string(containsString(GlobalExceptionHandler.EXCEPTION_DUPLICATE_VOTE)));
+    }
+
+    @Test
+    @WithUserDetails(value = USER2_MAIL)
+    void createNotFound() throws Exception {
+        perform(MockMvcRequestBuilders
+                .post(REST_URL + "/vote")
+                .param("restaurantId", Integer.toString(NOT_FOUND)))
+                .andDo(print())
+                .andExpect(status().isUnprocessableEntity());
+    }
+}